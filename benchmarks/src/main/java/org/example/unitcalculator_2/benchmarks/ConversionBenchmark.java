@@ -0,0 +1,79 @@
+package org.example.unitcalculator_2.benchmarks;
+
+import org.example.unitcalculator_2.UnitConverter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/*****************************************************************
+ UnitConverter: one named conversion (matrix lookup), one unit
+ expression, and a bulk convertAll over mixed length units
+ *******************************************************************/
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConversionBenchmark {
+
+    private static final String[] LENGTHS = {"m", "km", "mm", "in", "ft", "yd", "mi", "nmi"};
+
+    @Param({"0", "500"})
+    public int customUnits;
+
+    private List<String> registered;
+    private double[] values;
+    private String[] units;
+    private double[] out;
+
+    @Setup
+    public void setUp() {
+        registered = CustomUnits.register(customUnits);
+
+        Random random = new Random(42);
+        values = new double[10_000];
+        units = new String[values.length];
+        out = new double[values.length];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = random.nextDouble() * 1000;
+            units[i] = LENGTHS[random.nextInt(LENGTHS.length)];
+        }
+        // Build the table outside the measurement
+        UnitConverter.factor("m", "m");
+    }
+
+    @TearDown
+    public void tearDown() {
+        CustomUnits.unregister(registered);
+    }
+
+    @Benchmark
+    public double convertNamed() {
+        return UnitConverter.convert(12.5, "mi", "km");
+    }
+
+    @Benchmark
+    public double convertExpression() {
+        return UnitConverter.convert(100, "km/h", "mi/h");
+    }
+
+    @Benchmark
+    public double[] convertAll() {
+        UnitConverter.convertAll(values, units, "m", out);
+        return out;
+    }
+}
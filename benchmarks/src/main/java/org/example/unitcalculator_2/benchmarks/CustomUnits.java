@@ -0,0 +1,53 @@
+package org.example.unitcalculator_2.benchmarks;
+
+import org.example.unitcalculator_2.UnitDimension;
+import org.example.unitcalculator_2.UnitRegistry;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/*****************************************************************
+ Fills the registry with synthetic custom units so benchmarks can
+ measure how lookups scale with registry size
+ *******************************************************************/
+final class CustomUnits {
+
+    private CustomUnits() { }
+
+    // Symbols start with 'q', which no built-in unit does
+    static List<String> register(int count) {
+        Random random = new Random(42);
+        List<String> symbols = new ArrayList<>(count);
+
+        for (int i = 0; i < count; i++) {
+            String symbol = symbol(i);
+            UnitDimension dim = UnitDimension.of(
+                    random.nextInt(5) - 2,
+                    random.nextInt(3) - 1,
+                    random.nextInt(5) - 2,
+                    random.nextInt(3) - 1,
+                    0,
+                    0);
+            UnitRegistry.registerCustom(symbol, dim);
+            symbols.add(symbol);
+        }
+        return symbols;
+    }
+
+    static void unregister(List<String> symbols) {
+        for (String symbol : symbols) {
+            UnitRegistry.unregisterCustom(symbol);
+        }
+    }
+
+    private static String symbol(int index) {
+        StringBuilder sb = new StringBuilder("q");
+        int n = index;
+        do {
+            sb.append((char) ('a' + n % 26));
+            n /= 26;
+        } while (n > 0);
+        return sb.toString();
+    }
+}
@@ -0,0 +1,65 @@
+package org.example.unitcalculator_2.benchmarks;
+
+import org.example.unitcalculator_2.UnitDimension;
+import org.example.unitcalculator_2.ValueFormatter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/*****************************************************************
+ Result formatting: UnitDimension.toBaseString and the value
+ formatter used by MainController
+ *******************************************************************/
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FormattingBenchmark {
+
+    @Param({"1666.6666666666667", "0.25", "6.02214076e23", "1.602e-19"})
+    public double value;
+
+    private UnitDimension simple;
+    private UnitDimension complex;
+    private final StringBuilder buffer = new StringBuilder(32);
+
+    @Setup
+    public void setUp() {
+        simple = UnitDimension.of(1, 0, -1, 0, 0, 0);     // m/s
+        complex = UnitDimension.of(-2, -1, 4, 2, 1, -1);  // several numerator and denominator terms
+    }
+
+    @Benchmark
+    public String formatValue() {
+        return ValueFormatter.format(value);
+    }
+
+    // Bulk output path: reuses one builder, no String per value
+    @Benchmark
+    public int appendValue() {
+        buffer.setLength(0);
+        return ValueFormatter.appendTo(buffer, value).length();
+    }
+
+    @Benchmark
+    public String baseStringSimple() {
+        return simple.toBaseString();
+    }
+
+    @Benchmark
+    public String baseStringComplex() {
+        return complex.toBaseString();
+    }
+}
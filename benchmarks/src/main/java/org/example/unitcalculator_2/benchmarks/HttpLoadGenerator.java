@@ -0,0 +1,131 @@
+package org.example.unitcalculator_2.benchmarks;
+
+import com.sun.net.httpserver.HttpServer;
+import org.example.unitcalculator_2.UnitCalculatorServer;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*****************************************************************
+ Load generator for UnitCalculatorServer
+
+ Fires --requests GET /evaluate calls from --concurrency virtual
+ threads and prints throughput and p50 / p99 / max latency.
+ Without --url an embedded server is started on a free local port.
+
+ Usage: java -cp target/benchmarks.jar
+          org.example.unitcalculator_2.benchmarks.HttpLoadGenerator
+          [--url http://127.0.0.1:8080] [--requests N] [--concurrency N] [--warmup N]
+ *******************************************************************/
+public final class HttpLoadGenerator {
+
+    // Same mix as ParserBenchmark, plus an invalid one
+    private static final String[] EXPRESSIONS = {
+            "(500kg*20m)/(6s^2)",
+            "3 kg * 9.81 m / s^2 + 2 N",
+            "12 V * 3 A * 60 s",
+            "kgms^-2",
+            "5 km + 3 m",
+            "2 xyz",
+    };
+
+    private HttpLoadGenerator() { }
+
+    public static void main(String[] args) throws Exception {
+        String url = null;
+        int requests = 100_000;
+        int concurrency = 64;
+        int warmup = 10_000;
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--url" -> url = args[++i];
+                case "--requests" -> requests = Integer.parseInt(args[++i]);
+                case "--concurrency" -> concurrency = Integer.parseInt(args[++i]);
+                case "--warmup" -> warmup = Integer.parseInt(args[++i]);
+                default -> throw new IllegalArgumentException("Unknown argument: " + args[i]);
+            }
+        }
+        if (requests <= 0 || concurrency <= 0 || warmup < 0) {
+            throw new IllegalArgumentException("Counts must be positive");
+        }
+
+        HttpServer embedded = null;
+        if (url == null) {
+            embedded = UnitCalculatorServer.start(new InetSocketAddress("127.0.0.1", 0));
+            url = "http://127.0.0.1:" + embedded.getAddress().getPort();
+        }
+
+        URI[] targets = new URI[EXPRESSIONS.length];
+        for (int i = 0; i < targets.length; i++) {
+            targets[i] = URI.create(url + "/evaluate?expr="
+                    + URLEncoder.encode(EXPRESSIONS[i], StandardCharsets.UTF_8));
+        }
+
+        try (HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .build()) {
+            run(client, targets, warmup, concurrency);
+
+            long start = System.nanoTime();
+            long[] latencies = run(client, targets, requests, concurrency);
+            double seconds = (System.nanoTime() - start) / 1e9;
+
+            Arrays.sort(latencies);
+            System.out.printf("requests     %d (concurrency %d)%n", requests, concurrency);
+            System.out.printf("throughput   %.0f req/s%n", requests / seconds);
+            System.out.printf("p50          %.1f us%n", percentile(latencies, 0.50) / 1e3);
+            System.out.printf("p99          %.1f us%n", percentile(latencies, 0.99) / 1e3);
+            System.out.printf("max          %.1f us%n", latencies[latencies.length - 1] / 1e3);
+        } finally {
+            if (embedded != null) {
+                embedded.stop(0);
+            }
+        }
+    }
+
+    // Latency in ns of every request, once all of them are done
+    private static long[] run(HttpClient client, URI[] targets, int requests, int concurrency)
+            throws InterruptedException {
+        long[] latencies = new long[requests];
+        AtomicInteger next = new AtomicInteger();
+        AtomicInteger failures = new AtomicInteger();
+
+        try (ExecutorService workers = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int w = 0; w < concurrency; w++) {
+                workers.execute(() -> {
+                    int i;
+                    while ((i = next.getAndIncrement()) < requests) {
+                        HttpRequest request = HttpRequest.newBuilder(targets[i % targets.length]).GET().build();
+                        long t0 = System.nanoTime();
+                        try {
+                            client.send(request, HttpResponse.BodyHandlers.discarding());
+                        } catch (Exception e) {
+                            failures.incrementAndGet();
+                        }
+                        latencies[i] = System.nanoTime() - t0;
+                    }
+                });
+            }
+        }
+        if (failures.get() > 0) {
+            System.err.println(failures.get() + " requests failed");
+        }
+        return latencies;
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        int index = (int) Math.ceil(sorted.length * p) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+}
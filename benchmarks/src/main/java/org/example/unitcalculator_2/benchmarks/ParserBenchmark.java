@@ -0,0 +1,97 @@
+package org.example.unitcalculator_2.benchmarks;
+
+import org.example.unitcalculator_2.ExpressionTokenizer;
+import org.example.unitcalculator_2.Quantity;
+import org.example.unitcalculator_2.QuantityExpressionParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/*****************************************************************
+ QuantityExpressionParser.parse on typical input shapes, plus
+ lexing alone: a full tokenize versus relexing one keystroke
+ *******************************************************************/
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParserBenchmark {
+
+    @Param({"short", "nested", "concatenated", "prefixed", "custom"})
+    public String shape;
+
+    @Param({"0", "500"})
+    public int customUnits;
+
+    private String expression;
+    private String edited;   // expression with a space typed in the middle
+    private List<String> registered;
+
+    private final ExpressionTokenizer tokens = new ExpressionTokenizer();
+    private boolean typed;
+
+    @Setup
+    public void setUp() {
+        registered = CustomUnits.register(customUnits);
+
+        expression = switch (shape) {
+            case "short" -> "(500kg*20m)/(6s^2)";
+            case "nested" -> nested(12);
+            case "concatenated" -> "3 kgms^-2 * 2 Nm / Js";
+            case "prefixed" -> "5 kN * 3 mm / 2 μs";
+            case "custom" -> registered.isEmpty()
+                    ? "2 kg * 3 m"
+                    : "2 " + registered.get(0) + " * 3 " + registered.get(registered.size() - 1) + "kg";
+            default -> throw new IllegalArgumentException("Unknown shape: " + shape);
+        };
+        int mid = expression.length() / 2;
+        edited = expression.substring(0, mid) + " " + expression.substring(mid);
+        tokens.tokenize(expression);
+    }
+
+    @TearDown
+    public void tearDown() {
+        CustomUnits.unregister(registered);
+    }
+
+    @Benchmark
+    public Quantity parse() {
+        return QuantityExpressionParser.parse(expression);
+    }
+
+    @Benchmark
+    public ExpressionTokenizer tokenize() {
+        return tokens.tokenize(expression);
+    }
+
+    // Alternately type and delete one character, like the live result while editing
+    @Benchmark
+    public ExpressionTokenizer relexKeystroke() {
+        typed = !typed;
+        return tokens.update(typed ? edited : expression);
+    }
+
+    // ((((1 kg * 2 m) / 3 s) ... ) nested depth levels deep
+    private static String nested(int depth) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("(".repeat(depth)).append("1 kg");
+        for (int i = 0; i < depth; i++) {
+            sb.append(i % 2 == 0 ? " * " : " / ").append(i + 2).append(i % 2 == 0 ? " m)" : " s)");
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,78 @@
+package org.example.unitcalculator_2.benchmarks;
+
+import org.example.unitcalculator_2.UnitDimension;
+import org.example.unitcalculator_2.UnitRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/*****************************************************************
+ UnitRegistry.resolveSymbol for each lookup branch
+ (direct hit, prefixed, concatenated) and getDerivedSymbol
+ *******************************************************************/
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RegistryBenchmark {
+
+    @Param({"0", "100", "500"})
+    public int customUnits;
+
+    private List<String> registered;
+    private String concatenatedCustom;
+    private UnitDimension force;
+
+    @Setup
+    public void setUp() {
+        registered = CustomUnits.register(customUnits);
+        concatenatedCustom = registered.isEmpty()
+                ? "kgmsA"
+                : "kg" + registered.get(registered.size() / 2) + "ms";
+        force = UnitRegistry.resolveSymbol("N");
+    }
+
+    @TearDown
+    public void tearDown() {
+        CustomUnits.unregister(registered);
+    }
+
+    @Benchmark
+    public UnitDimension resolveDirect() {
+        return UnitRegistry.resolveSymbol("Pa");
+    }
+
+    @Benchmark
+    public UnitDimension resolvePrefixed() {
+        return UnitRegistry.resolveSymbol("kN");
+    }
+
+    @Benchmark
+    public UnitDimension resolveConcatenated() {
+        return UnitRegistry.resolveSymbol("kgmsA");
+    }
+
+    @Benchmark
+    public UnitDimension resolveConcatenatedCustom() {
+        return UnitRegistry.resolveSymbol(concatenatedCustom);
+    }
+
+    @Benchmark
+    public String derivedSymbol() {
+        return UnitRegistry.getDerivedSymbol(force);
+    }
+}
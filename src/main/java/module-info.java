@@ -1,6 +1,8 @@
 module org.example.unitcalculator_2 {
     requires javafx.controls;
     requires javafx.fxml;
+    requires java.management;
+    requires jdk.httpserver;
 
 
     opens org.example.unitcalculator_2 to javafx.fxml;
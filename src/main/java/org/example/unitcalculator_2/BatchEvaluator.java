@@ -0,0 +1,76 @@
+package org.example.unitcalculator_2;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/*****************************************************************
+ Headless evaluation of many expressions at once
+
+ Expressions are evaluated in parallel on a private ForkJoinPool.
+ Results come back in input order, one record per expression;
+ invalid expressions produce an error record instead of throwing.
+ Valid expressions are compiled once into a shared ExpressionCache,
+ so a formula seen before (CLI, server, batch) is a single lookup
+ until a custom unit change makes it stale.
+ *******************************************************************/
+public final class BatchEvaluator implements AutoCloseable {
+
+    public record Result(int index, String expression, Quantity quantity, String error) {
+        public boolean isSuccess() {
+            return error == null;
+        }
+    }
+
+    // Enough for the working set of formulas of a busy server
+    private static final int CACHE_SIZE = 4096;
+    private static final ExpressionCache CACHE = new ExpressionCache(CACHE_SIZE);
+
+    private final ForkJoinPool pool;
+
+    public BatchEvaluator() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public BatchEvaluator(int parallelism) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("Parallelism must be positive");
+        }
+        this.pool = new ForkJoinPool(parallelism);
+    }
+
+    public int getParallelism() {
+        return pool.getParallelism();
+    }
+
+    public List<Result> evaluateAll(Stream<String> expressions) {
+        return evaluateAll(expressions.toList());
+    }
+
+    public List<Result> evaluateAll(List<String> expressions) {
+        Result[] results = new Result[expressions.size()];
+
+        // A parallel stream started from inside the pool runs on the pool's workers
+        pool.submit(() -> IntStream.range(0, results.length)
+                        .parallel()
+                        .forEach(i -> results[i] = evaluate(i, expressions.get(i))))
+                .join();
+
+        return List.of(results);
+    }
+
+    public static Result evaluate(int index, String expression) {
+        try {
+            return new Result(index, expression, CACHE.evaluate(expression), null);
+        } catch (IllegalArgumentException e) {
+            // ParseError, or null input; rejected formulas are not cached
+            return new Result(index, expression, null, e.getMessage());
+        }
+    }
+
+    @Override
+    public void close() {
+        pool.shutdown();
+    }
+}
@@ -0,0 +1,250 @@
+package org.example.unitcalculator_2;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/*****************************************************************
+ Counters for the parse / resolve / storage hot paths, exposed
+ as a platform MBean
+
+ All counters are LongAdders, so concurrent callers don't contend.
+ Start with -Dunitcalculator.metrics=false to switch everything
+ off: ENABLED is a static final, so the JIT drops the guarded
+ calls and the hot paths cost nothing extra.
+ *******************************************************************/
+public final class CalculatorMetrics implements CalculatorMetricsMBean {
+
+    public static final boolean ENABLED =
+            Boolean.parseBoolean(System.getProperty("unitcalculator.metrics", "true"));
+
+    public static final String OBJECT_NAME = "org.example.unitcalculator_2:type=CalculatorMetrics";
+
+    // Bucket i: durations below 2^i ns; the last one takes everything longer
+    private static final int BUCKETS = 40;
+
+    private static final CalculatorMetrics INSTANCE = new CalculatorMetrics();
+
+    private final LongAdder parses = new LongAdder();
+    private final LongAdder parseFailures = new LongAdder();
+    private final LongAdder parseNanos = new LongAdder();
+    private final LongAccumulator parseMaxNanos = new LongAccumulator(Math::max, 0);
+    private final LongAdder[] parseBuckets = new LongAdder[BUCKETS];
+
+    private final LongAdder resolveDirect = new LongAdder();
+    private final LongAdder resolvePrefix = new LongAdder();
+    private final LongAdder resolveConcatenated = new LongAdder();
+    private final LongAdder resolveMiss = new LongAdder();
+
+    private final LongAdder customUnitLoads = new LongAdder();
+    private volatile long lastCustomUnitLoadNanos;
+    private final LongAdder persistenceWrites = new LongAdder();
+    private final LongAdder persistenceNanos = new LongAdder();
+
+    static {
+        if (ENABLED) {
+            try {
+                ManagementFactory.getPlatformMBeanServer()
+                        .registerMBean(INSTANCE, new ObjectName(OBJECT_NAME));
+            } catch (InstanceAlreadyExistsException e) {
+                // registered by another class loader, keep that one
+            } catch (JMException e) {
+                // Metrics still count, they are just not visible over JMX
+                System.err.println("Metrics MBean not registered: " + e.getMessage());
+            }
+        }
+    }
+
+    private CalculatorMetrics() {
+        for (int i = 0; i < BUCKETS; i++) {
+            parseBuckets[i] = new LongAdder();
+        }
+    }
+
+    public static CalculatorMetrics get() {
+        return INSTANCE;
+    }
+
+    //**************************************************************************
+    // Recording (callers check ENABLED first)
+    //**************************************************************************
+    static void recordParse(long startNanos, boolean success) {
+        long nanos = System.nanoTime() - startNanos;
+        CalculatorMetrics m = INSTANCE;
+        m.parses.increment();
+        if (!success) {
+            m.parseFailures.increment();
+        }
+        m.parseNanos.add(nanos);
+        m.parseMaxNanos.accumulate(nanos);
+        m.parseBuckets[bucket(nanos)].increment();
+    }
+
+    static void recordResolveDirect() {
+        INSTANCE.resolveDirect.increment();
+    }
+
+    static void recordResolvePrefix() {
+        INSTANCE.resolvePrefix.increment();
+    }
+
+    static void recordResolveConcatenated() {
+        INSTANCE.resolveConcatenated.increment();
+    }
+
+    static void recordResolveMiss() {
+        INSTANCE.resolveMiss.increment();
+    }
+
+    static void recordCustomUnitLoad(long startNanos) {
+        INSTANCE.lastCustomUnitLoadNanos = System.nanoTime() - startNanos;
+        INSTANCE.customUnitLoads.increment();
+    }
+
+    static void recordPersistenceWrite(long startNanos) {
+        INSTANCE.persistenceNanos.add(System.nanoTime() - startNanos);
+        INSTANCE.persistenceWrites.increment();
+    }
+
+    private static int bucket(long nanos) {
+        int b = 64 - Long.numberOfLeadingZeros(nanos);
+        return Math.min(b, BUCKETS - 1);
+    }
+
+    //**************************************************************************
+    // MBean attributes
+    //**************************************************************************
+    @Override
+    public long getParseCount() {
+        return parses.sum();
+    }
+
+    @Override
+    public long getParseFailureCount() {
+        return parseFailures.sum();
+    }
+
+    @Override
+    public double getParseMeanMicros() {
+        long n = parses.sum();
+        return n == 0 ? 0 : parseNanos.sum() / 1e3 / n;
+    }
+
+    @Override
+    public double getParseP50Micros() {
+        return percentileMicros(0.50);
+    }
+
+    @Override
+    public double getParseP99Micros() {
+        return percentileMicros(0.99);
+    }
+
+    @Override
+    public double getParseMaxMicros() {
+        return parseMaxNanos.get() / 1e3;
+    }
+
+    @Override
+    public long[] getParseLatencyHistogram() {
+        long[] counts = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = parseBuckets[i].sum();
+        }
+        return counts;
+    }
+
+    // Upper bound of the bucket the percentile falls into
+    private double percentileMicros(double p) {
+        long[] counts = getParseLatencyHistogram();
+        long total = 0;
+        for (long c : counts) {
+            total += c;
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(total * p);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return (1L << i) / 1e3;
+            }
+        }
+        return getParseMaxMicros();
+    }
+
+    @Override
+    public long getResolveDirectCount() {
+        return resolveDirect.sum();
+    }
+
+    @Override
+    public long getResolvePrefixCount() {
+        return resolvePrefix.sum();
+    }
+
+    @Override
+    public long getResolveConcatenatedCount() {
+        return resolveConcatenated.sum();
+    }
+
+    @Override
+    public long getResolveMissCount() {
+        return resolveMiss.sum();
+    }
+
+    @Override
+    public int getRegistrySize() {
+        return UnitRegistry.size();
+    }
+
+    @Override
+    public int getRegistryVersion() {
+        return UnitRegistry.version();
+    }
+
+    @Override
+    public long getCustomUnitLoadCount() {
+        return customUnitLoads.sum();
+    }
+
+    @Override
+    public double getLastCustomUnitLoadMillis() {
+        return lastCustomUnitLoadNanos / 1e6;
+    }
+
+    @Override
+    public long getPersistenceWriteCount() {
+        return persistenceWrites.sum();
+    }
+
+    @Override
+    public double getPersistenceWriteMeanMicros() {
+        long n = persistenceWrites.sum();
+        return n == 0 ? 0 : persistenceNanos.sum() / 1e3 / n;
+    }
+
+    @Override
+    public void reset() {
+        parses.reset();
+        parseFailures.reset();
+        parseNanos.reset();
+        parseMaxNanos.reset();
+        for (LongAdder b : parseBuckets) {
+            b.reset();
+        }
+        resolveDirect.reset();
+        resolvePrefix.reset();
+        resolveConcatenated.reset();
+        resolveMiss.reset();
+        customUnitLoads.reset();
+        lastCustomUnitLoadNanos = 0;
+        persistenceWrites.reset();
+        persistenceNanos.reset();
+    }
+}
@@ -0,0 +1,45 @@
+package org.example.unitcalculator_2;
+
+// JMX view of CalculatorMetrics (org.example.unitcalculator_2:type=CalculatorMetrics)
+public interface CalculatorMetricsMBean {
+
+    // QuantityExpressionParser.parse
+    long getParseCount();
+
+    long getParseFailureCount();
+
+    double getParseMeanMicros();
+
+    double getParseP50Micros();
+
+    double getParseP99Micros();
+
+    double getParseMaxMicros();
+
+    // Calls per latency bucket; bucket i holds durations in [2^(i-1), 2^i) ns
+    long[] getParseLatencyHistogram();
+
+    // Which branch symbol resolution took
+    long getResolveDirectCount();
+
+    long getResolvePrefixCount();
+
+    long getResolveConcatenatedCount();
+
+    long getResolveMissCount();
+
+    int getRegistrySize();
+
+    int getRegistryVersion();
+
+    // CustomUnitStorage
+    long getCustomUnitLoadCount();
+
+    double getLastCustomUnitLoadMillis();
+
+    long getPersistenceWriteCount();
+
+    double getPersistenceWriteMeanMicros();
+
+    void reset();
+}
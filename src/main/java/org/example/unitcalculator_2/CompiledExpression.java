@@ -0,0 +1,40 @@
+package org.example.unitcalculator_2;
+
+/*****************************************************************
+ Immutable result of QuantityExpressionParser.compile
+
+ The grammar has no free variables, so once every symbol is resolved
+ and every constant folded the whole program collapses into a single
+ Quantity. The registry version it was compiled against is kept so
+ callers can tell when a custom unit change made it stale.
+ *******************************************************************/
+public final class CompiledExpression {
+
+    private final String source;
+    private final Quantity result;
+    private final int registryVersion;
+
+    CompiledExpression(String source, Quantity result, int registryVersion) {
+        this.source = source;
+        this.result = result;
+        this.registryVersion = registryVersion;
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    public Quantity evaluate() {
+        return result;
+    }
+
+    // False once a custom unit was added or removed after compilation
+    public boolean isCurrent() {
+        return registryVersion == UnitRegistry.version();
+    }
+
+    @Override
+    public String toString() {
+        return source + " = " + result;
+    }
+}
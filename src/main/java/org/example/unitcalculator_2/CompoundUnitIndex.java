@@ -0,0 +1,207 @@
+package org.example.unitcalculator_2;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*****************************************************************
+ Short compound names for dimensions without a derived symbol
+
+ Built once from the derived and base units: every product and
+ quotient of two of them, and of three, is scored (one point per
+ factor, one more for a power) and the simplest spelling of each
+ dimension is kept, e.g. kg*m^2/s -> J*s. Ties go to the units
+ listed first: base units, then derived units in registration
+ order. A compound is only used when it scores better than the
+ plain base form. Dimensions outside the index try one more factor
+ on top of an indexed compound; that search runs once per dimension
+ and is remembered.
+ *******************************************************************/
+final class CompoundUnitIndex {
+
+    private static final String[] BASE_SYMBOLS = {"kg", "m", "s", "A", "K", "mol"};
+    private static final int MAX_MEMO = 4096;
+    private static final String NONE = "";
+
+    private record Unit(String symbol, UnitDimension dim, int rank) {}
+
+    // exps: symbol -> exponent it was rendered from; rank: sum of the ranks of its units, for breaking ties
+    private record Compound(String text, int score, int rank, Map<String, Integer> exps) {}
+
+    private final List<Unit> units = new ArrayList<>();
+    private final Map<UnitDimension, String> derived;
+    private final Map<UnitDimension, Compound> index = new HashMap<>();
+    private final Map<UnitDimension, String> misses = new ConcurrentHashMap<>();
+
+    // derived is iterated in registration order
+    CompoundUnitIndex(Map<String, UnitDimension> symbolToDim, Map<UnitDimension, String> derived) {
+        this.derived = Map.copyOf(derived);
+
+        // Derived units are written first, but base units rank first
+        int rank = BASE_SYMBOLS.length;
+        for (String symbol : derived.values()) {
+            units.add(new Unit(symbol, symbolToDim.get(symbol), rank++));
+        }
+        for (int i = 0; i < BASE_SYMBOLS.length; i++) {
+            units.add(new Unit(BASE_SYMBOLS[i], symbolToDim.get(BASE_SYMBOLS[i]), i));
+        }
+
+        int n = units.size();
+        for (int i = 0; i < n; i++) {
+            for (int j = i; j < n; j++) {
+                offer(new Unit[] {units.get(i), units.get(j)}, new int[] {1, 1});
+                if (i != j) {
+                    offer(new Unit[] {units.get(i), units.get(j)}, new int[] {1, -1});
+                    offer(new Unit[] {units.get(j), units.get(i)}, new int[] {1, -1});
+                }
+                for (int k = 0; k < n; k++) {
+                    Unit[] three = {units.get(i), units.get(j), units.get(k)};
+                    if (k >= j) {
+                        offer(three, new int[] {1, 1, 1});
+                    }
+                    offer(three, new int[] {1, 1, -1});
+                    offer(three, new int[] {-1, -1, 1});
+                }
+            }
+        }
+    }
+
+    // Compound spelling of dim, or null if none beats the base form
+    String lookup(UnitDimension dim) {
+        Compound c = index.get(dim);
+        if (c != null) {
+            return c.text();
+        }
+        String found = misses.get(dim);
+        if (found == null) {
+            if (misses.size() >= MAX_MEMO) {
+                misses.clear();
+            }
+            found = search(dim);
+            misses.put(dim, found);
+        }
+        return found.isEmpty() ? null : found;
+    }
+
+    // An indexed compound times or divided by one more unit
+    private String search(UnitDimension dim) {
+        int limit = baseScore(dim);
+        Compound best = null;
+        for (Unit u : units) {
+            Compound times = index.get(divideOrNull(dim, u.dim()));
+            if (times != null) {
+                best = better(best, with(times, u, 1));
+            }
+            Compound per = index.get(multiplyOrNull(dim, u.dim()));
+            if (per != null) {
+                best = better(best, with(per, u, -1));
+            }
+        }
+        return best != null && best.score() < limit ? best.text() : NONE;
+    }
+
+    // c times u (sign 1) or divided by u (sign -1); a unit already in c only changes its exponent
+    private static Compound with(Compound c, Unit u, int sign) {
+        Map<String, Integer> exps = new LinkedHashMap<>(c.exps());
+        exps.merge(u.symbol(), sign, Integer::sum);
+        return render(exps, c.rank() + u.rank());
+    }
+
+    private void offer(Unit[] factors, int[] signs) {
+        Map<String, Integer> exps = new LinkedHashMap<>();
+        long bits = UnitDimension.DIMENSIONLESS.bits();
+        int rank = 0;
+        for (int i = 0; i < factors.length; i++) {
+            rank += factors[i].rank();
+            exps.merge(factors[i].symbol(), signs[i], Integer::sum);
+            bits = signs[i] > 0
+                    ? UnitDimension.multiplyBits(bits, factors[i].dim().bits())
+                    : UnitDimension.divideBits(bits, factors[i].dim().bits());
+        }
+        UnitDimension dim = UnitDimension.ofBits(bits);
+        if (dim.isDimensionless() || derived.containsKey(dim)) {
+            return;
+        }
+
+        Compound candidate = render(exps, rank);
+        if (candidate.score() >= baseScore(dim)) {
+            return;
+        }
+        index.merge(dim, candidate, CompoundUnitIndex::better);
+    }
+
+    private static Compound render(Map<String, Integer> exps, int rank) {
+        StringBuilder num = new StringBuilder();
+        StringBuilder den = new StringBuilder();
+        int score = 0;
+        for (Map.Entry<String, Integer> e : exps.entrySet()) {
+            int exp = e.getValue();
+            if (exp == 0) {
+                continue;
+            }
+            StringBuilder target = exp > 0 ? num : den;
+            if (target.length() > 0) {
+                target.append('*');
+            }
+            target.append(e.getKey());
+            score++;
+            if (Math.abs(exp) != 1) {
+                target.append('^').append(Math.abs(exp));
+                score++;
+            }
+        }
+        if (num.length() == 0) {
+            num.append('1');
+        }
+        String text = den.length() == 0 ? num.toString() : num + "/" + den;
+        return new Compound(text, score, rank, exps);
+    }
+
+    // Score of dim.toBaseString() under the same rules
+    private static int baseScore(UnitDimension dim) {
+        int[] exps = {dim.getLength(), dim.getMass(), dim.getTime(),
+                dim.getCurrent(), dim.getTemperature(), dim.getAmount()};
+        int score = 0;
+        for (int e : exps) {
+            if (e != 0) {
+                score += Math.abs(e) == 1 ? 1 : 2;
+            }
+        }
+        return score;
+    }
+
+    private static Compound better(Compound a, Compound b) {
+        if (a == null) {
+            return b;
+        }
+        if (a.score() != b.score()) {
+            return a.score() < b.score() ? a : b;
+        }
+        if (a.rank() != b.rank()) {
+            return a.rank() < b.rank() ? a : b;
+        }
+        if (a.text().length() != b.text().length()) {
+            return a.text().length() < b.text().length() ? a : b;
+        }
+        return a.text().compareTo(b.text()) <= 0 ? a : b;
+    }
+
+    private static UnitDimension divideOrNull(UnitDimension a, UnitDimension b) {
+        try {
+            return a.divide(b);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static UnitDimension multiplyOrNull(UnitDimension a, UnitDimension b) {
+        try {
+            return a.multiply(b);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
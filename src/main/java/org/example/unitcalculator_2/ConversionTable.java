@@ -0,0 +1,374 @@
+package org.example.unitcalculator_2;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/*****************************************************************
+ Conversion factors for one registry version
+
+ Every unit is a node with a factor to a parent node: a prefixed
+ unit points at its base (km -> m, 1000), a non-SI unit defined as
+ a number times one unit points at that unit (ft -> in, 12).
+ Registered symbols and units defined by a compound expression
+ (psi = lbf/in^2) are roots, with their factor to SI.
+
+ Nodes are grouped by dimension and each group gets a dense n x n
+ matrix of A -> B factors, filled when the table is built. An entry
+ is the product of factors from A up to the nearest common ancestor
+ divided by the same for B, so ratios within one family stay exact
+ (ft -> in is 12, not 0.3048 / 0.0254). Groups above MAX_DENSE
+ units only keep the SI factors.
+
+ Immutable once built; UnitConverter caches one per version.
+ *******************************************************************/
+final class ConversionTable {
+
+    // Largest group with a matrix (512 x 512 doubles = 2 MB)
+    private static final int MAX_DENSE = 512;
+
+    // SI factor and dimension of a unit expression
+    record Unit(double factor, long bits) {}
+
+    private final int version;
+    private final Map<String, UnitDimension> registered;
+    private final Map<String, String> definitions;
+    private final Map<String, Integer> index = new HashMap<>();
+
+    // Per node
+    private int count;
+    private String[] symbols = new String[64];
+    private long[] bits = new long[64];
+    private int[] parent = new int[64];
+    private double[] toParent = new double[64];
+    private final double[] toSi;
+    private final int[] group;
+    private final int[] slot;   // position inside the group
+
+    // Per group
+    private final int[] groupSize;
+    private final double[][] matrix;   // [from * n + to], null above MAX_DENSE
+
+    ConversionTable(int version, Map<String, UnitDimension> registered, Map<String, String> definitions) {
+        this.version = version;
+        this.registered = registered;
+        this.definitions = definitions;
+
+        for (Map.Entry<String, UnitDimension> e : registered.entrySet()) {
+            addNode(e.getKey(), e.getValue().bits(), -1, 1.0);
+        }
+        Set<String> resolving = new HashSet<>();
+        for (String symbol : definitions.keySet()) {
+            resolve(symbol, resolving);
+        }
+        // Prefixed forms last, so a registered or non-SI symbol is never shadowed by one
+        int direct = count;
+        for (int node = 0; node < direct; node++) {
+            String symbol = symbols[node];
+            if (!registered.containsKey(symbol) && !definitions.containsKey(symbol)) {
+                continue;   // already prefixed (used by a definition)
+            }
+            for (int p = 0; p < UnitSymbolTable.PREFIXES.length; p++) {
+                String prefixed = UnitSymbolTable.PREFIXES[p] + symbol;
+                if (!index.containsKey(prefixed)) {
+                    addNode(prefixed, bits[node], node, UnitSymbolTable.FACTORS[p]);
+                }
+            }
+        }
+
+        toSi = new double[count];
+        for (int node = 0; node < count; node++) {
+            toSi[node] = chainToSi(node);
+        }
+
+        // Group by dimension
+        group = new int[count];
+        slot = new int[count];
+        Map<Long, Integer> groupOf = new HashMap<>();
+        int[] sizes = new int[16];
+        for (int node = 0; node < count; node++) {
+            int g = groupOf.computeIfAbsent(bits[node], k -> groupOf.size());
+            if (g == sizes.length) {
+                sizes = Arrays.copyOf(sizes, g * 2);
+            }
+            group[node] = g;
+            slot[node] = sizes[g]++;
+        }
+        groupSize = Arrays.copyOf(sizes, groupOf.size());
+
+        int[][] members = new int[groupSize.length][];
+        for (int g = 0; g < groupSize.length; g++) {
+            members[g] = new int[groupSize[g]];
+        }
+        for (int node = 0; node < count; node++) {
+            members[group[node]][slot[node]] = node;
+        }
+
+        matrix = new double[groupSize.length][];
+        for (int g = 0; g < groupSize.length; g++) {
+            int n = groupSize[g];
+            if (n > MAX_DENSE) {
+                continue;
+            }
+            double[] m = new double[n * n];
+            for (int i = 0; i < n; i++) {
+                for (int j = 0; j < n; j++) {
+                    m[i * n + j] = (i == j) ? 1.0 : ratio(members[g][i], members[g][j]);
+                }
+            }
+            matrix[g] = m;
+        }
+    }
+
+    int version() {
+        return version;
+    }
+
+    // Node of a unit symbol (registered, prefixed or non-SI), -1 if unknown
+    int find(String symbol) {
+        Integer node = index.get(symbol);
+        return (node == null) ? -1 : node;
+    }
+
+    boolean sameDimension(int a, int b) {
+        return group[a] == group[b];
+    }
+
+    // Factor taking a value in unit a to unit b (same dimension)
+    double factor(int a, int b) {
+        double[] m = matrix[group[a]];
+        if (m == null) {
+            return toSi[a] / toSi[b];
+        }
+        return m[slot[a] * groupSize[group[a]] + slot[b]];
+    }
+
+    Unit unit(int node) {
+        return new Unit(toSi[node], bits[node]);
+    }
+
+    // Unit expression such as km/h, kg*m/s^2 or (ft)^3
+    Unit parse(String expression) {
+        ExpressionTokenizer tokens = ExpressionTokenizer.forCurrentThread().tokenize(expression);
+        return new Reader(tokens, null).read();
+    }
+
+    //**************************************************************************
+    // Building
+    //**************************************************************************
+
+    // Node of symbol, defining non-SI units on the way; -1 if unknown
+    private int resolve(String symbol, Set<String> resolving) {
+        Integer node = index.get(symbol);
+        if (node != null) {
+            return node;
+        }
+        String definition = definitions.get(symbol);
+        if (definition != null) {
+            if (!resolving.add(symbol)) {
+                throw new IllegalStateException("Circular unit definition: " + symbol);
+            }
+            int defined = define(symbol, definition, resolving);
+            resolving.remove(symbol);
+            return defined;
+        }
+        // Prefixed form of a registered or non-SI unit used inside a definition
+        if (symbol.length() > 1) {
+            String base = symbol.substring(1);
+            int p = prefixIndex(symbol.charAt(0));
+            if (p >= 0 && (registered.containsKey(base) || definitions.containsKey(base))) {
+                int b = resolve(base, resolving);
+                return addNode(symbol, bits[b], b, UnitSymbolTable.FACTORS[p]);
+            }
+        }
+        return -1;
+    }
+
+    private int define(String symbol, String definition, Set<String> resolving) {
+        // Own tokenizer: definitions are resolved recursively
+        ExpressionTokenizer tokens = new ExpressionTokenizer().tokenize(definition);
+
+        // [number] unit: an edge to that unit
+        int k = (tokens.kind(0) == ExpressionTokenizer.NUMBER) ? 1 : 0;
+        if (tokens.kind(k) == ExpressionTokenizer.SYMBOL && tokens.kind(k + 1) == ExpressionTokenizer.END) {
+            double number = (k == 1) ? Double.parseDouble(definition.substring(tokens.start(0), tokens.end(0))) : 1.0;
+            String unit = definition.substring(tokens.start(k), tokens.end(k));
+            int base = resolve(unit, resolving);
+            if (base < 0) {
+                throw new ParseError(ParseError.Code.UNKNOWN_SYMBOL, tokens.start(k), unit);
+            }
+            return addNode(symbol, bits[base], base, number);
+        }
+
+        Unit u = new Reader(tokens, resolving).read();
+        return addNode(symbol, u.bits(), -1, u.factor());
+    }
+
+    private int addNode(String symbol, long dimension, int parentNode, double factor) {
+        if (count == bits.length) {
+            symbols = Arrays.copyOf(symbols, count * 2);
+            bits = Arrays.copyOf(bits, count * 2);
+            parent = Arrays.copyOf(parent, count * 2);
+            toParent = Arrays.copyOf(toParent, count * 2);
+        }
+        symbols[count] = symbol;
+        bits[count] = dimension;
+        parent[count] = parentNode;
+        toParent[count] = factor;
+        index.put(symbol, count);
+        return count++;
+    }
+
+    private static int prefixIndex(char c) {
+        for (int p = 0; p < UnitSymbolTable.PREFIXES.length; p++) {
+            if (UnitSymbolTable.PREFIXES[p] == c) {
+                return p;
+            }
+        }
+        return -1;
+    }
+
+    // Multiplied from the unit up, so integer steps (12 in, 3 ft) stay exact as long as possible
+    private double chainToSi(int node) {
+        double f = 1.0;
+        for (int n = node; n >= 0; n = parent[n]) {
+            f *= toParent[n];
+        }
+        return f;
+    }
+
+    // a -> b through the nearest common ancestor, or through SI if there is none
+    private double ratio(int a, int b) {
+        double upA = 1.0;
+        for (int x = a; x >= 0; x = parent[x]) {
+            double upB = 1.0;
+            for (int y = b; y >= 0; y = parent[y]) {
+                if (y == x) {
+                    return upA / upB;
+                }
+                upB *= toParent[y];
+            }
+            upA *= toParent[x];
+        }
+        return toSi[a] / toSi[b];
+    }
+
+    //**************************************************************************
+    // Unit expressions: products, quotients, integer powers and parentheses
+    //**************************************************************************
+    private final class Reader {
+
+        private final ExpressionTokenizer tokens;
+        private final String input;
+        private final Set<String> resolving;   // non-null while building
+        private int tok;
+
+        Reader(ExpressionTokenizer tokens, Set<String> resolving) {
+            this.tokens = tokens;
+            this.input = tokens.text();
+            this.resolving = resolving;
+        }
+
+        Unit read() {
+            Unit u = product();
+            if (tokens.kind(tok) != ExpressionTokenizer.END) {
+                throw new ParseError(ParseError.Code.TRAILING_CHARACTERS, tokens.start(tok));
+            }
+            return u;
+        }
+
+        private Unit product() {
+            Unit u = power();
+            while (true) {
+                int k = tokens.kind(tok);
+                int at = tokens.start(tok);
+                if (k == ExpressionTokenizer.STAR) {
+                    tok++;
+                    u = multiply(u, power(), at);
+                } else if (k == ExpressionTokenizer.SLASH) {
+                    tok++;
+                    u = divide(u, power(), at);
+                } else if (k == ExpressionTokenizer.NUMBER || k == ExpressionTokenizer.SYMBOL
+                        || k == ExpressionTokenizer.LPAREN) {
+                    u = multiply(u, power(), at);
+                } else {
+                    return u;
+                }
+            }
+        }
+
+        private Unit power() {
+            Unit base = primary();
+            if (tokens.kind(tok) != ExpressionTokenizer.CARET) {
+                return base;
+            }
+            int start = tokens.start(tok);
+            tok++;
+            boolean negative = false;
+            if (ExpressionTokenizer.isSign(tokens.kind(tok))) {
+                negative = tokens.kind(tok) == ExpressionTokenizer.MINUS;
+                tok++;
+            }
+            if (tokens.kind(tok) != ExpressionTokenizer.INTEGER) {
+                throw new ParseError(ParseError.Code.INVALID_EXPONENT, start);
+            }
+            int exp;
+            try {
+                exp = Integer.parseInt(input, tokens.start(tok), tokens.end(tok), 10);
+            } catch (NumberFormatException e) {
+                // More digits than an int holds; far beyond any dimension exponent anyway
+                throw new ParseError(ParseError.Code.EXPONENT_OUT_OF_RANGE, start);
+            }
+            tok++;
+            int e = negative ? -exp : exp;
+            return new Unit(Math.pow(base.factor(), e), ExpressionReader.pow(base.bits(), e, start));
+        }
+
+        private Unit primary() {
+            int start = tokens.start(tok);
+            switch (tokens.kind(tok)) {
+                case ExpressionTokenizer.END -> throw new ParseError(ParseError.Code.UNEXPECTED_END, start);
+                case ExpressionTokenizer.LPAREN -> {
+                    tok++;
+                    Unit inside = product();
+                    if (tokens.kind(tok) != ExpressionTokenizer.RPAREN) {
+                        throw new ParseError(ParseError.Code.MISSING_CLOSING_PARENTHESIS, tokens.start(tok));
+                    }
+                    tok++;
+                    return inside;
+                }
+                case ExpressionTokenizer.NUMBER -> {
+                    String s = input.substring(start, tokens.end(tok));
+                    tok++;
+                    try {
+                        return new Unit(Double.parseDouble(s), UnitDimension.DIMENSIONLESS.bits());
+                    } catch (NumberFormatException e) {
+                        throw new ParseError(ParseError.Code.INVALID_NUMBER, start);
+                    }
+                }
+                case ExpressionTokenizer.SYMBOL -> {
+                    String symbol = input.substring(start, tokens.end(tok));
+                    tok++;
+                    int node = (resolving == null) ? find(symbol) : resolve(symbol, resolving);
+                    if (node < 0) {
+                        throw new ParseError(ParseError.Code.UNKNOWN_SYMBOL, start, symbol);
+                    }
+                    // While building, toSi is not filled yet
+                    return new Unit((resolving == null) ? toSi[node] : chainToSi(node), bits[node]);
+                }
+                default -> throw new ParseError(ParseError.Code.UNEXPECTED_CHARACTER, start,
+                        String.valueOf(input.charAt(start)));
+            }
+        }
+
+        private Unit multiply(Unit a, Unit b, int at) {
+            return new Unit(a.factor() * b.factor(), ExpressionReader.multiply(a.bits(), b.bits(), at));
+        }
+
+        private Unit divide(Unit a, Unit b, int at) {
+            return new Unit(a.factor() / b.factor(), ExpressionReader.divide(a.bits(), b.bits(), at));
+        }
+    }
+}
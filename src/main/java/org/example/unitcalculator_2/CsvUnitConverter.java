@@ -0,0 +1,358 @@
+package org.example.unitcalculator_2;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/*****************************************************************
+ Bulk CSV normalizer (no JavaFX needed)
+
+ Every row has a numeric column and a unit-expression column; the
+ output repeats the row and appends the value in base units and the
+ base unit, or ERROR and the reason:
+
+   12.5,N*m        ->  12.5,N*m,12.5,kg*m^2/s^2
+   3,2 kg          ->  3,2 kg,6.0,kg
+   5,km            ->  5,km,5000.0,m
+
+ Units are read like UnitConverter reads them, so prefixes and the
+ units of NonSiUnits (ft, bar, ...) are scaled to SI.
+
+ Quoted fields may hold commas, doubled quotes and line breaks; a
+ line break ends a row only outside quotes. The input is memory-mapped
+ in chunks that end at a row boundary, found by following the quotes
+ from the start of the file, and converted in parallel, each with its
+ own cache of unit strings. At most 2 * parallel chunks are in flight
+ and they are written in input order, so memory stays bounded whatever
+ the file size (an unclosed quote makes the rest of the file one row).
+
+ Usage: CsvUnitConverter [--value-column N] [--unit-column N] [--header]
+                         [--chunk-mb N] [--parallel N] input.csv [output.csv|-]
+ *******************************************************************/
+public final class CsvUnitConverter {
+
+    private static final int DEFAULT_CHUNK_MB = 8;
+
+    private final int valueColumn;
+    private final int unitColumn;
+    private final boolean header;
+    private final long chunkBytes;
+    private final int parallelism;
+
+    private long rows;
+    private long errors;
+
+    CsvUnitConverter(int valueColumn, int unitColumn, boolean header, long chunkBytes, int parallelism) {
+        this.valueColumn = valueColumn;
+        this.unitColumn = unitColumn;
+        this.header = header;
+        this.chunkBytes = chunkBytes;
+        this.parallelism = parallelism;
+    }
+
+    public static void main(String[] args) {
+        int valueColumn = 0;
+        int unitColumn = 1;
+        boolean header = false;
+        int chunkMb = DEFAULT_CHUNK_MB;
+        int parallelism = Runtime.getRuntime().availableProcessors();
+        String input = null;
+        String output = null;
+
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--value-column" -> valueColumn = Integer.parseInt(args[++i]);
+                    case "--unit-column" -> unitColumn = Integer.parseInt(args[++i]);
+                    case "--header" -> header = true;
+                    case "--chunk-mb" -> chunkMb = Integer.parseInt(args[++i]);
+                    case "--parallel" -> parallelism = Integer.parseInt(args[++i]);
+                    default -> {
+                        if (args[i].startsWith("--") || output != null) {
+                            throw new IllegalArgumentException("Unknown argument: " + args[i]);
+                        }
+                        if (input == null) {
+                            input = args[i];
+                        } else {
+                            output = args[i];
+                        }
+                    }
+                }
+            }
+            if (input == null) {
+                throw new IllegalArgumentException("Missing input file");
+            }
+            if (valueColumn < 0 || unitColumn < 0 || valueColumn == unitColumn
+                    || chunkMb <= 0 || parallelism <= 0) {
+                throw new IllegalArgumentException("Invalid options");
+            }
+        } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException ex) {
+            System.err.println("Usage: CsvUnitConverter [--value-column N] [--unit-column N] [--header]"
+                    + " [--chunk-mb N] [--parallel N] input.csv [output.csv|-]");
+            System.exit(2);
+            return;
+        }
+
+        CsvUnitConverter converter = new CsvUnitConverter(
+                valueColumn, unitColumn, header, (long) chunkMb << 20, parallelism);
+
+        long start = System.nanoTime();
+        try (OutputStream out = new BufferedOutputStream((output == null || output.equals("-"))
+                ? System.out
+                : Files.newOutputStream(Paths.get(output)), 1 << 16)) {
+            converter.run(Paths.get(input), out);
+        } catch (IOException e) {
+            System.err.println("Error: " + e.getMessage());
+            System.exit(1);
+        }
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.err.printf("%d rows (%d errors) in %.2f s, %.0f rows/s%n",
+                converter.rows, converter.errors, seconds, converter.rows / Math.max(seconds, 1e-9));
+    }
+
+    //**************************************************************************
+    // Pipeline
+    //**************************************************************************
+    void run(Path input, OutputStream out) throws IOException {
+        try (FileChannel ch = FileChannel.open(input, StandardOpenOption.READ);
+             ExecutorService workers = Executors.newFixedThreadPool(parallelism)) {
+            long size = ch.size();
+            long pos = 0;
+
+            if (header && size > 0) {
+                long end = rowEnd(ch, 0, 0, size);
+                String head = decode(ch, 0, end).toString().stripTrailing();
+                out.write((head + ",value_base,base_unit\n").getBytes(StandardCharsets.UTF_8));
+                pos = end;
+            }
+
+            // Chunks in flight, oldest first; the window bounds memory
+            ArrayDeque<Future<Chunk>> pending = new ArrayDeque<>();
+            while (pos < size) {
+                long end = rowEnd(ch, pos, Math.min(pos + chunkBytes, size), size);
+                long from = pos;
+                pending.add(workers.submit(() -> convert(ch, from, end)));
+                pos = end;
+
+                if (pending.size() >= 2 * parallelism) {
+                    write(pending.poll(), out);
+                }
+            }
+            while (!pending.isEmpty()) {
+                write(pending.poll(), out);
+            }
+        }
+    }
+
+    private record Chunk(byte[] output, long rows, long errors) {}
+
+    private void write(Future<Chunk> future, OutputStream out) throws IOException {
+        Chunk chunk;
+        try {
+            chunk = future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        }
+        out.write(chunk.output());
+        rows += chunk.rows();
+        errors += chunk.errors();
+    }
+
+    // Position just after the first row-ending line break at or after min (or size); a row starts at from
+    private static long rowEnd(FileChannel ch, long from, long min, long size) throws IOException {
+        int state = FIELD_START;
+        long pos = from;
+        while (pos < size) {
+            long len = Math.min(1 << 20, size - pos);
+            MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, pos, len);
+            for (int i = 0; i < len; i++) {
+                byte b = buf.get(i);
+                if (b == '\n' && state != QUOTED && pos + i >= min) {
+                    return pos + i + 1;
+                }
+                state = next(state, b);
+            }
+            pos += len;
+        }
+        return size;
+    }
+
+    //**************************************************************************
+    // Quote state, the same for bytes (chunk ends) and chars (rows and split)
+    //**************************************************************************
+    private static final int FIELD_START = 0;
+    private static final int UNQUOTED = 1;
+    private static final int QUOTED = 2;
+    private static final int QUOTE_SEEN = 3;   // a quote inside QUOTED: closes the field unless another follows
+
+    // Only a quote at the start of a field opens one; a line break outside QUOTED ends the row
+    private static int next(int state, int c) {
+        return switch (state) {
+            case QUOTED -> (c == '"') ? QUOTE_SEEN : QUOTED;
+            case QUOTE_SEEN -> (c == '"') ? QUOTED : (c == ',' || c == '\n') ? FIELD_START : UNQUOTED;
+            case FIELD_START -> (c == '"') ? QUOTED : (c == ',' || c == '\n') ? FIELD_START : UNQUOTED;
+            default -> (c == ',' || c == '\n') ? FIELD_START : UNQUOTED;
+        };
+    }
+
+    private static CharBuffer decode(FileChannel ch, long start, long end) throws IOException {
+        MappedByteBuffer bytes = ch.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+        return StandardCharsets.UTF_8.decode(bytes);
+    }
+
+    //**************************************************************************
+    // Chunk conversion (runs on a worker)
+    //**************************************************************************
+    private record Unit(double value, String base, String error) {}
+
+    private Chunk convert(FileChannel ch, long start, long end) throws IOException {
+        CharBuffer text = decode(ch, start, end);
+        StringBuilder out = new StringBuilder(text.length() + text.length() / 2);
+        Map<String, Unit> units = new HashMap<>();
+        ConversionTable table = UnitConverter.table();
+        String[] fields = new String[Math.max(valueColumn, unitColumn) + 1];
+
+        long rowCount = 0;
+        long errorCount = 0;
+        int len = text.length();
+        int lineStart = 0;
+        while (lineStart < len) {
+            // Line breaks inside a quoted field belong to the row
+            int lineEnd = lineStart;
+            int state = FIELD_START;
+            char c;
+            while (lineEnd < len && ((c = text.get(lineEnd)) != '\n' || state == QUOTED)) {
+                state = next(state, c);
+                lineEnd++;
+            }
+            int next = lineEnd + 1;
+            if (lineEnd > lineStart && text.get(lineEnd - 1) == '\r') {
+                lineEnd--;
+            }
+            if (lineEnd == lineStart) {
+                lineStart = next;
+                continue;
+            }
+
+            rowCount++;
+            out.append(text, lineStart, lineEnd).append(',');
+            String error = convertRow(text, lineStart, lineEnd, fields, units, table, out);
+            if (error != null) {
+                errorCount++;
+                out.append("ERROR,");
+                appendQuoted(out, error);
+            }
+            out.append('\n');
+            lineStart = next;
+        }
+        return new Chunk(out.toString().getBytes(StandardCharsets.UTF_8), rowCount, errorCount);
+    }
+
+    // Appends value_base,base_unit; returns the error instead when the row can't be converted
+    private String convertRow(CharBuffer text, int start, int end, String[] fields,
+                              Map<String, Unit> units, ConversionTable table, StringBuilder out) {
+        if (split(text, start, end, fields) < fields.length) {
+            return "Missing column";
+        }
+
+        double value;
+        try {
+            value = Double.parseDouble(fields[valueColumn].strip());
+        } catch (NumberFormatException e) {
+            return "Invalid number";
+        }
+
+        String unitText = fields[unitColumn];
+        Unit unit = units.get(unitText);
+        if (unit == null) {
+            try {
+                // A named unit is one lookup; anything else is parsed as an expression
+                String expression = unitText.strip();
+                int node = table.find(expression);
+                ConversionTable.Unit si = (node >= 0) ? table.unit(node) : table.parse(expression);
+                unit = new Unit(si.factor(), UnitDimension.ofBits(si.bits()).toBaseString(), null);
+            } catch (IllegalArgumentException e) {
+                unit = new Unit(0, null, e.getMessage());
+            }
+            units.put(unitText, unit);
+        }
+        if (unit.error() != null) {
+            return unit.error();
+        }
+
+        out.append(value * unit.value()).append(',');
+        appendQuoted(out, unit.base());
+        return null;
+    }
+
+    // Fills the wanted leading fields (quotes removed); returns how many were found
+    private static int split(CharBuffer text, int start, int end, String[] fields) {
+        int count = 0;
+        int pos = start;
+        StringBuilder field = new StringBuilder();
+        while (count < fields.length && pos <= end) {
+            field.setLength(0);
+            if (pos < end && text.get(pos) == '"') {
+                pos++;
+                while (pos < end) {
+                    char c = text.get(pos++);
+                    if (c == '"') {
+                        if (pos < end && text.get(pos) == '"') {
+                            field.append('"');
+                            pos++;
+                        } else {
+                            break;
+                        }
+                    } else {
+                        field.append(c);
+                    }
+                }
+                while (pos < end && text.get(pos) != ',') {
+                    pos++;
+                }
+            } else {
+                while (pos < end && text.get(pos) != ',') {
+                    field.append(text.get(pos++));
+                }
+            }
+            fields[count++] = field.toString();
+            pos++;   // skip the comma
+        }
+        return count;
+    }
+
+    private static void appendQuoted(StringBuilder out, String s) {
+        if (s.indexOf(',') < 0 && s.indexOf('"') < 0) {
+            out.append(s);
+            return;
+        }
+        out.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"') {
+                out.append('"');
+            }
+            out.append(c);
+        }
+        out.append('"');
+    }
+}
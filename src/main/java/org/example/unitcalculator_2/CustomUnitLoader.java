@@ -0,0 +1,167 @@
+package org.example.unitcalculator_2;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/*****************************************************************
+ Loading of saved custom units, at startup and on reload
+
+ Units may refer to other custom units anywhere in the file, so
+ they are ordered by a dependency graph first. Every level of the
+ graph is parsed in parallel against the units of earlier levels,
+ and the whole result is published to UnitRegistry in one swap.
+ Units on a cycle are reported, not loaded.
+ *******************************************************************/
+final class CustomUnitLoader {
+
+    record Result(List<CustomUnitStorage.CustomUnit> loaded, List<String> errors) {}
+
+    private CustomUnitLoader() { }
+
+    // Unregister removed, register units; units may refer to customs that are already registered
+    static Result apply(List<CustomUnitStorage.CustomUnit> units, Collection<String> removed) {
+        Map<String, CustomUnitStorage.CustomUnit> bySymbol = new LinkedHashMap<>();
+        for (CustomUnitStorage.CustomUnit cu : units) {
+            bySymbol.put(cu.symbol(), cu);
+        }
+
+        // dependents: symbol -> units whose expression refers to it
+        Map<String, List<String>> dependents = new HashMap<>();
+        Map<String, Integer> pendingDeps = new HashMap<>();
+        Function<String, List<String>> splitter = UnitRegistry.splitterWith(bySymbol.keySet());
+        for (CustomUnitStorage.CustomUnit cu : bySymbol.values()) {
+            List<String> refs = references(cu, bySymbol, splitter);
+            pendingDeps.put(cu.symbol(), refs.size());
+            for (String ref : refs) {
+                dependents.computeIfAbsent(ref, k -> new ArrayList<>()).add(cu.symbol());
+            }
+        }
+
+        List<String> level = new ArrayList<>();
+        pendingDeps.forEach((symbol, count) -> {
+            if (count == 0) level.add(symbol);
+        });
+
+        Map<String, UnitDimension> resolved = new LinkedHashMap<>();
+        Map<String, String> failed = new ConcurrentHashMap<>();
+
+        while (!level.isEmpty()) {
+            Function<String, UnitDimension> resolver = UnitRegistry.resolverWith(resolved);
+            Map<String, UnitDimension> parsed = new ConcurrentHashMap<>();
+
+            level.parallelStream().forEach(symbol -> {
+                try {
+                    String expr = bySymbol.get(symbol).expression();
+                    parsed.put(symbol, UnitExpressionParser.parse(expr, resolver));
+                } catch (IllegalArgumentException ex) {
+                    failed.put(symbol, ex.getMessage());
+                }
+            });
+            resolved.putAll(parsed);
+
+            List<String> next = new ArrayList<>();
+            for (String symbol : level) {
+                for (String dependent : dependents.getOrDefault(symbol, List.of())) {
+                    if (pendingDeps.merge(dependent, -1, Integer::sum) == 0) {
+                        next.add(dependent);
+                    }
+                }
+            }
+            level.clear();
+            level.addAll(next);
+        }
+
+        UnitRegistry.applyCustomChanges(removed, resolved);
+
+        List<CustomUnitStorage.CustomUnit> loaded = new ArrayList<>();
+        List<String> errors = new ArrayList<>();
+        List<String> cyclic = new ArrayList<>();
+
+        // Report in file order
+        for (CustomUnitStorage.CustomUnit cu : bySymbol.values()) {
+            String symbol = cu.symbol();
+            if (resolved.containsKey(symbol)) {
+                loaded.add(cu);
+            } else if (failed.containsKey(symbol)) {
+                errors.add(symbol + ": " + failed.get(symbol));
+            } else if (pendingDeps.get(symbol) > 0) {
+                cyclic.add(symbol);
+            }
+        }
+        if (!cyclic.isEmpty()) {
+            errors.add("Cyclic definitions: " + String.join(", ", cyclic));
+        }
+        return new Result(loaded, errors);
+    }
+
+    /***********************************************************************
+    Custom units an expression refers to. A symbol run that names a custom
+    unit, with or without a prefix, is a reference; a run that only resolves
+    with custom units (a custom unit juxtaposed with others) refers to the
+    custom symbols that splitter picks for it. Everything else is left to
+    the parser.
+    ***********************************************************************/
+    private static List<String> references(CustomUnitStorage.CustomUnit unit,
+                                           Map<String, CustomUnitStorage.CustomUnit> customs,
+                                           Function<String, List<String>> splitter) {
+        List<String> refs = new ArrayList<>();
+        String expr = unit.expression();
+        ExpressionTokenizer tokens = ExpressionTokenizer.forCurrentThread().tokenize(expr);
+
+        for (int t = 0; t < tokens.count(); t++) {
+            if (tokens.kind(t) != ExpressionTokenizer.SYMBOL) {
+                continue;
+            }
+            String run = expr.substring(tokens.start(t), tokens.end(t));
+
+            if (customs.containsKey(run)) {
+                addRef(refs, run);
+            } else if (!resolvesWithoutCustoms(run)) {
+                String prefixed = prefixedCustom(run, customs);
+                if (prefixed != null) {
+                    addRef(refs, prefixed);
+                    continue;
+                }
+                List<String> parts = splitter.apply(run);
+                if (parts != null) {
+                    for (String part : parts) {
+                        if (customs.containsKey(part)) {
+                            addRef(refs, part);
+                        }
+                    }
+                }
+            }
+        }
+        return refs;
+    }
+
+    // The custom symbol of a run like "kbar", or null
+    private static String prefixedCustom(String run, Map<String, CustomUnitStorage.CustomUnit> customs) {
+        if (run.length() < 2) {
+            return null;
+        }
+        for (char prefix : UnitSymbolTable.PREFIXES) {
+            if (run.charAt(0) == prefix && customs.containsKey(run.substring(1))) {
+                return run.substring(1);
+            }
+        }
+        return null;
+    }
+
+    // A probe, not a resolution: kept out of the resolution metrics
+    private static boolean resolvesWithoutCustoms(String run) {
+        return UnitRegistry.isResolvable(run);
+    }
+
+    private static void addRef(List<String> refs, String symbol) {
+        if (!refs.contains(symbol)) {
+            refs.add(symbol);
+        }
+    }
+}
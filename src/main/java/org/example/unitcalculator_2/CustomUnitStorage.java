@@ -1,93 +1,435 @@
 package org.example.unitcalculator_2;
 
 import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
+/*****************************************************************
+ Append-only record log of custom units
+
+   symbol|expression   add (same format as the old file)
+   -|symbol            delete (tombstone)
+
+ Later records win. Once more than half of the records are dead
+ the log is compacted: the live set is written to a temp file which
+ then atomically replaces the log.
+
+ add/remove only queue the change. One background
+ writer collects everything queued within WRITE_DELAY_MS and
+ writes it in one go, holding a FileLock on custom-units.lock so
+ several running apps never interleave or lose each other's
+ writes. flush() waits for the queue to reach the disk, close()
+ flushes and stops the writer. I/O errors go to the error handler.
+
+ Before appending, the writer notes the log's size and the size it
+ is heading for in the lock file and clears the note afterwards. A
+ note still there means that append never finished: readers stop
+ at its start and the next writer cuts exactly those bytes off.
+ Nothing else is ever truncated; a last line without a line break
+ (e.g. a hand-edited file) is a normal record.
+ *******************************************************************/
 public final class CustomUnitStorage {
 
     public record CustomUnit(String symbol, String expression) {}
 
     private static final Path DIR = Paths.get(System.getProperty("user.home"), ".physics-unit-calculator");
     private static final Path FILE = DIR.resolve("custom-units.txt");
+    private static final Path TEMP = DIR.resolve("custom-units.txt.tmp");
+    private static final Path LOCK_FILE = DIR.resolve("custom-units.lock");
 
-    public static List<CustomUnit> loadAll() {
+    private static final String TOMBSTONE = "-";
 
-        List<CustomUnit> list = new ArrayList<>();
+    // Compact when dead records exceed this share, but not for tiny logs
+    private static final double MAX_GARBAGE_RATIO = 0.5;
+    private static final int MIN_RECORDS_TO_COMPACT = 64;
 
-        if (!Files.exists(FILE)) {
-            return list;
+    // Changes arriving this close together share one write
+    private static final long WRITE_DELAY_MS = 200;
+
+    private static final Object LOCK = new Object();   // the file and the counts below
+    private static int records;      // lines in the log
+    private static int liveRecords;  // units they add up to
+
+    // Queued changes (QUEUE): records to append
+    private static final Object QUEUE = new Object();
+    private static final List<String> pendingRecords = new ArrayList<>();
+    private static boolean writeScheduled;
+    private static boolean closed;
+
+    private static volatile Consumer<IOException> errorHandler = CustomUnitStorage::printError;
+
+    private static final ScheduledExecutorService WRITER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "custom-unit-writer");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // Receives every I/O error of loading and writing; called on the thread that hit it
+    public static void setErrorHandler(Consumer<IOException> handler) {
+        errorHandler = (handler == null) ? CustomUnitStorage::printError : handler;
+    }
+
+    // Default handler: one line on stderr, like the command-line tools
+    private static void printError(IOException e) {
+        System.err.println("Custom units: " + e.getMessage());
+    }
+
+    static void reportError(IOException e) {
+        errorHandler.accept(e);
+    }
+
+    public static void add(CustomUnit unit) {
+        enqueue(unit.symbol() + "|" + unit.expression());
+    }
+
+    public static void remove(String symbol) {
+        enqueue(TOMBSTONE + "|" + symbol);
+    }
+
+    // Block until everything queued so far is on disk
+    public static void flush() {
+        synchronized (QUEUE) {
+            if (closed) {
+                return;
+            }
         }
+        try {
+            WRITER.submit(CustomUnitStorage::writePending).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
 
+    // Flush and stop the writer; later changes are written by the calling thread
+    public static void close() {
+        flush();
+        synchronized (QUEUE) {
+            closed = true;
+        }
+        WRITER.shutdown();
         try {
-            for (String line : Files.readAllLines(FILE)) {
-                line = line.trim();
+            WRITER.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        writePending();
+    }
 
-                if (line.isEmpty() || line.startsWith("#")) {
-                    continue;
-                }
+    //**************************************************************************
+    // Write-behind queue
+    //**************************************************************************
+    private static void enqueue(String record) {
+        boolean inline;
+        synchronized (QUEUE) {
+            pendingRecords.add(record);
+            inline = scheduleWrite();
+        }
+        if (inline) {
+            writePending();
+        }
+    }
 
-                String[] parts = line.split("\\|", 2);
+    // Caller holds QUEUE; returns true when closed and the caller must write itself
+    private static boolean scheduleWrite() {
+        if (closed) {
+            return true;
+        }
+        if (!writeScheduled) {
+            writeScheduled = true;
+            WRITER.schedule(CustomUnitStorage::writePending, WRITE_DELAY_MS, TimeUnit.MILLISECONDS);
+        }
+        return false;
+    }
 
-                if (parts.length != 2) {
-                    continue;
+    // Take the whole queue and write it under the file lock; lock order is LOCK, then QUEUE
+    private static void writePending() {
+        synchronized (LOCK) {
+            List<String> batch;
+            synchronized (QUEUE) {
+                writeScheduled = false;
+                if (pendingRecords.isEmpty()) {
+                    return;
                 }
+                batch = new ArrayList<>(pendingRecords);
+                pendingRecords.clear();
+            }
 
-                String symbol = parts[0].trim();
-                String expr   = parts[1].trim();
+            try (FileChannel lockChannel = openLock()) {
+                FileLock lock = lockChannel.lock();
+                try {
+                    dropUnfinishedAppend(lockChannel);
+                    append(batch, lockChannel);
+                    compactIfNeeded();
+                } finally {
+                    lock.release();
+                }
+            } catch (IOException e) {
+                errorHandler.accept(e);
+            }
+        }
+    }
+
+    private static FileChannel openLock() throws IOException {
+        if (!Files.exists(DIR)) {
+            Files.createDirectories(DIR);
+        }
+        return FileChannel.open(LOCK_FILE,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    // {log size before, log size after} of an append that has not finished, or null
+    private static long[] unfinishedAppend(FileChannel lock) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(2 * Long.BYTES);
+        while (buf.hasRemaining() && lock.read(buf, buf.position()) > 0) {
+            // read the whole note
+        }
+        if (buf.hasRemaining()) {
+            return null;
+        }
+        return new long[] {buf.getLong(0), buf.getLong(Long.BYTES)};
+    }
+
+    // Same, for readers that do not hold the file lock
+    private static long[] unfinishedAppend() throws IOException {
+        try (FileChannel lock = FileChannel.open(LOCK_FILE, StandardOpenOption.READ)) {
+            return unfinishedAppend(lock);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
 
-                if (!symbol.isEmpty() && !expr.isEmpty()) {
-                    list.add(new CustomUnit(symbol, expr));
+    // Cut off what a writer that died mid-append left behind, and only that
+    private static void dropUnfinishedAppend(FileChannel lock) throws IOException {
+        long[] note = unfinishedAppend(lock);
+        if (note == null) {
+            return;
+        }
+        if (Files.exists(FILE)) {
+            try (FileChannel ch = FileChannel.open(FILE, StandardOpenOption.WRITE)) {
+                long size = ch.size();
+                if (size > note[0] && size < note[1]) {
+                    ch.truncate(note[0]);
                 }
             }
-        } catch (IOException e) {
-            e.printStackTrace();
         }
-        return list;
+        lock.truncate(0);
     }
 
-    public static void add(CustomUnit unit) {
-        try {
-            if (!Files.exists(DIR)) {
-                Files.createDirectories(DIR);
+    //**************************************************************************
+    // Log (callers hold LOCK and the file lock)
+    //**************************************************************************
+    private static void append(List<String> batch, FileChannel lock) throws IOException {
+        long start = CalculatorMetrics.ENABLED ? System.nanoTime() : 0;
+
+        try (FileChannel ch = FileChannel.open(FILE,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long pos = ch.size();
+
+            StringBuilder text = new StringBuilder();
+            if (pos > 0 && !endsWithLineBreak(ch, pos)) {
+                text.append(System.lineSeparator());   // hand-written last line
+            }
+            for (String record : batch) {
+                text.append(record).append(System.lineSeparator());
+                liveRecords += record.startsWith(TOMBSTONE + "|") ? -1 : 1;
             }
+            ByteBuffer buf = ByteBuffer.wrap(text.toString().getBytes(StandardCharsets.UTF_8));
 
-            String line = unit.symbol() + "|" + unit.expression() + System.lineSeparator();
+            ByteBuffer note = ByteBuffer.allocate(2 * Long.BYTES).putLong(pos).putLong(pos + buf.remaining()).flip();
+            while (note.hasRemaining()) {
+                lock.write(note, note.position());
+            }
+            while (buf.hasRemaining()) {
+                pos += ch.write(buf, pos);
+            }
+            lock.truncate(0);
+        }
+        records += batch.size();
+        if (CalculatorMetrics.ENABLED) {
+            CalculatorMetrics.recordPersistenceWrite(start);
+        }
+    }
 
-            Files.writeString(
-                    FILE,
-                    line,
-                    Files.exists(FILE)
-                            ? StandardOpenOption.APPEND
-                            : StandardOpenOption.CREATE
-            );
-        } catch (IOException e) {
-            e.printStackTrace();
+    private static void replace(List<CustomUnit> units) throws IOException {
+        if (units.isEmpty()) {
+            Files.deleteIfExists(FILE);
+            records = 0;
+            liveRecords = 0;
+        } else {
+            writeAtomically(units);
         }
     }
 
-    public static void overwriteAll(List<CustomUnit> units) {
-        try {
-            if (units.isEmpty()) {
-                Files.deleteIfExists(FILE);
-                return;
+    private static boolean endsWithLineBreak(FileChannel ch, long size) throws IOException {
+        ByteBuffer last = ByteBuffer.allocate(1);
+        ch.read(last, size - 1);
+        return last.get(0) == '\n';
+    }
+
+    private static Collection<CustomUnit> replay() throws IOException {
+        return readLog(null).live().values();
+    }
+
+    /***********************************************************************
+    Live units of the log up to byte offset, plus the identity of the file
+    that was read. Passing the previous state to read() only decodes what
+    was appended since; a log that was replaced (compaction) or shrank, or whose last line had no line break yet, is read whole.
+    Where the file system has no file keys every read is a full one.
+    ***********************************************************************/
+    record LogState(Object fileKey, long offset, Map<String, CustomUnit> live, boolean lineComplete) {}
+
+    static LogState read(LogState previous) throws IOException {
+        synchronized (LOCK) {
+            long start = CalculatorMetrics.ENABLED ? System.nanoTime() : 0;
+            LogState state = readLog(previous);
+            if (CalculatorMetrics.ENABLED) {
+                CalculatorMetrics.recordCustomUnitLoad(start);
+            }
+            return state;
+        }
+    }
+
+    // Caller holds LOCK
+    private static LogState readLog(LogState previous) throws IOException {
+        Map<String, CustomUnit> live = new LinkedHashMap<>();
+        if (!Files.exists(FILE)) {
+            records = 0;
+            liveRecords = 0;
+            return new LogState(null, 0, live, true);
+        }
+
+        // Key before opening: a rename in between makes the next read a full one
+        Object key = Files.readAttributes(FILE, BasicFileAttributes.class).fileKey();
+        long[] note = unfinishedAppend();
+        try (FileChannel ch = FileChannel.open(FILE, StandardOpenOption.READ)) {
+            long size = ch.size();
+            if (note != null && size > note[0] && size < note[1]) {
+                size = note[0];   // append still running (or died): not there yet
             }
+            boolean tail = previous != null && key != null && previous.lineComplete()
+                    && key.equals(previous.fileKey()) && size >= previous.offset();
+            long from = 0;
+            if (tail) {
+                live.putAll(previous.live());
+                from = previous.offset();
+            } else {
+                records = 0;
+            }
+            long complete = fold(ch, from, size, live, !tail);
+            liveRecords = live.size();
+            return new LogState(key, size, live, complete == size);
+        }
+    }
 
-            if (!Files.exists(DIR)) {
-                Files.createDirectories(DIR);
+    /***********************************************************************
+    Memory-map the log from a record boundary and fold its records into
+    the live set. The end of the file ends the last record like a line
+    break would (as readAllLines did). Returns the offset after the last
+    line break.
+    ***********************************************************************/
+    private static long fold(FileChannel ch, long from, long size,
+                             Map<String, CustomUnit> live, boolean countRecords) throws IOException {
+        MappedByteBuffer bytes = ch.map(FileChannel.MapMode.READ_ONLY, from, size - from);
+        int complete = bytes.limit();
+        while (complete > 0 && bytes.get(complete - 1) != '\n') {
+            complete--;
+        }
+        CharBuffer text = StandardCharsets.UTF_8.decode(bytes);
+
+        int start = 0;
+        int len = text.length();
+        for (int i = 0; i <= len; i++) {
+            if (i < len && text.get(i) != '\n') {
+                continue;
             }
+            String line = text.subSequence(start, i).toString().trim();
+            start = i + 1;
 
-            StringBuilder sb = new StringBuilder();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            if (countRecords) {
+                records++;
+            }
 
+            int bar = line.indexOf('|');
+            if (bar < 0) {
+                continue;
+            }
+
+            String left  = line.substring(0, bar).trim();
+            String right = line.substring(bar + 1).trim();
+
+            if (left.equals(TOMBSTONE)) {
+                live.remove(right);
+            } else if (!left.isEmpty() && !right.isEmpty()) {
+                // re-added units move to the end, like a fresh add
+                live.remove(left);
+                live.put(left, new CustomUnit(left, right));
+            }
+        }
+        return from + complete;
+    }
+
+    // Path of the log, for watching it
+    static Path logFile() {
+        return FILE;
+    }
+
+    // Replays first: another app may have appended since our counts were taken
+    private static void compactIfNeeded() throws IOException {
+        if (records < MIN_RECORDS_TO_COMPACT || (records - liveRecords) <= records * MAX_GARBAGE_RATIO) {
+            return;
+        }
+        replace(new ArrayList<>(replay()));
+    }
+
+    // Write to a temp file, then rename over the log; a crash leaves either the old or the new file
+    private static void writeAtomically(List<CustomUnit> units) throws IOException {
+        long start = CalculatorMetrics.ENABLED ? System.nanoTime() : 0;
+        if (!Files.exists(DIR)) {
+            Files.createDirectories(DIR);
+        }
+
+        try (Writer w = Files.newBufferedWriter(TEMP, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
             for (CustomUnit cu : units) {
-                sb.append(cu.symbol()).append("|").append(cu.expression()).append(System.lineSeparator());
+                w.write(cu.symbol());
+                w.write('|');
+                w.write(cu.expression());
+                w.write(System.lineSeparator());
             }
+        }
+
+        try {
+            Files.move(TEMP, FILE, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(TEMP, FILE, StandardCopyOption.REPLACE_EXISTING);
+        }
 
-            Files.writeString(FILE, sb.toString(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING
-            );
-        } catch (IOException e) {
-            e.printStackTrace();
+        records = units.size();
+        liveRecords = units.size();
+        if (CalculatorMetrics.ENABLED) {
+            CalculatorMetrics.recordPersistenceWrite(start);
         }
     }
 
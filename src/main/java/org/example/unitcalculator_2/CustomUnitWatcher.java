@@ -0,0 +1,133 @@
+package org.example.unitcalculator_2;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/*****************************************************************
+ Keeps UnitRegistry in step with custom-units.txt
+
+ A daemon thread watches the log's directory. Once the file has
+ been quiet for DEBOUNCE_MS it reads only the records appended
+ since the last read (CustomUnitStorage.read), diffs the live set
+ with the previous one and applies just the added and removed
+ symbols to the registry in one swap.
+
+ Changes this process made itself are already in the registry and
+ are skipped, so the UI's own adds and deletes cause no work. The
+ first update is the initial load of the whole file.
+ *******************************************************************/
+final class CustomUnitWatcher implements AutoCloseable {
+
+    // Units loaded or unloaded by one reload
+    record Update(CustomUnitLoader.Result loaded, List<String> removed) {}
+
+    private static final long DEBOUNCE_MS = 200;
+
+    private final Path file = CustomUnitStorage.logFile();
+    private final WatchService watcher;
+    private final Consumer<Update> listener;
+    private CustomUnitStorage.LogState state;   // watcher thread only
+
+    private CustomUnitWatcher(WatchService watcher, Consumer<Update> listener) {
+        this.watcher = watcher;
+        this.listener = listener;
+    }
+
+    // Load the saved units, then keep watching; listener runs on the watcher thread
+    static CustomUnitWatcher start(Consumer<Update> listener) throws IOException {
+        Path dir = CustomUnitStorage.logFile().getParent();
+        if (!Files.exists(dir)) {
+            Files.createDirectories(dir);
+        }
+        WatchService ws = dir.getFileSystem().newWatchService();
+        // Registered before the first read, so no write can fall in between
+        dir.register(ws, StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+
+        CustomUnitWatcher w = new CustomUnitWatcher(ws, listener);
+        Thread.ofPlatform().name("custom-unit-watcher").daemon().start(w::run);
+        return w;
+    }
+
+    @Override
+    public void close() throws IOException {
+        watcher.close();
+    }
+
+    private void run() {
+        try {
+            reload();
+            while (true) {
+                if (!touchesLog(watcher.take())) {
+                    continue;
+                }
+                // Debounce: wait until a whole interval passes without events
+                WatchKey more;
+                while ((more = watcher.poll(DEBOUNCE_MS, TimeUnit.MILLISECONDS)) != null) {
+                    touchesLog(more);
+                }
+                reload();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException e) {
+            // closed
+        }
+    }
+
+    // Consumes the key's events; true if any may concern the log
+    private boolean touchesLog(WatchKey key) {
+        boolean hit = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW
+                    || file.getFileName().equals(event.context())) {
+                hit = true;
+            }
+        }
+        key.reset();
+        return hit;
+    }
+
+    private void reload() {
+        CustomUnitStorage.LogState next;
+        try {
+            next = CustomUnitStorage.read(state);
+        } catch (IOException e) {
+            CustomUnitStorage.reportError(e);
+            return;
+        }
+        Map<String, CustomUnitStorage.CustomUnit> before = (state == null) ? Map.of() : state.live();
+        state = next;
+
+        // Diff the file, then drop what the registry already reflects
+        List<String> removed = new ArrayList<>();
+        for (CustomUnitStorage.CustomUnit old : before.values()) {
+            if (!old.equals(next.live().get(old.symbol())) && UnitRegistry.hasSymbol(old.symbol())) {
+                removed.add(old.symbol());
+            }
+        }
+        List<CustomUnitStorage.CustomUnit> added = new ArrayList<>();
+        for (CustomUnitStorage.CustomUnit cu : next.live().values()) {
+            boolean changed = !cu.equals(before.get(cu.symbol()));
+            if (changed && (!UnitRegistry.hasSymbol(cu.symbol()) || removed.contains(cu.symbol()))) {
+                added.add(cu);
+            }
+        }
+
+        if (added.isEmpty() && removed.isEmpty()) {
+            return;
+        }
+        listener.accept(new Update(CustomUnitLoader.apply(added, removed), removed));
+    }
+}
@@ -0,0 +1,184 @@
+package org.example.unitcalculator_2;
+
+import java.util.function.Function;
+
+/*****************************************************************
+ Dimension-only analysis of the QuantityExpressionParser grammar
+
+ Reads the same ExpressionTokenizer tokens as the parser. Numbers
+ are checked for syntax but never converted, powers never touch
+ Math.pow and no Quantity is created: the only state is the packed
+ dimension. Errors are the same ParseErrors parse would
+ report, including the position of the first + or - whose sides
+ have different dimensions.
+ *******************************************************************/
+public final class DimensionChecker extends ExpressionReader {
+
+    private final Function<String, UnitDimension> resolver;   // null = live registry
+
+    private DimensionChecker(ExpressionTokenizer tokens, Function<String, UnitDimension> resolver) {
+        super(tokens);
+        this.resolver = resolver;
+    }
+
+    public static UnitDimension check(String input) {
+        return check(input, null);
+    }
+
+    // Error of the formula, or null if it is well-formed and dimensionally consistent
+    public static ParseError validate(String input) {
+        try {
+            check(input);
+            return null;
+        } catch (ParseError e) {
+            return e;
+        }
+    }
+
+    // Resolver returns null for unknown symbols (see UnitRegistry.resolverWith)
+    static UnitDimension check(String input, Function<String, UnitDimension> resolver) {
+        if (input == null) {
+            throw new ParseError(ParseError.Code.NULL_INPUT, -1);
+        }
+        DimensionChecker c = new DimensionChecker(ExpressionTokenizer.forCurrentThread().tokenize(input), resolver);
+        long dim = c.expression();
+
+        if (c.kind() != ExpressionTokenizer.END) {
+            throw new ParseError(ParseError.Code.TRAILING_CHARACTERS, c.startOf());
+        }
+        return UnitDimension.ofBits(dim);
+    }
+
+    private long expression() {
+        long d = term();
+        while (true) {
+            int at = startOf();
+            if (match(ExpressionTokenizer.PLUS)) {
+                if (term() != d) {
+                    throw new ParseError(ParseError.Code.ADD_DIMENSION_MISMATCH, at);
+                }
+            } else if (match(ExpressionTokenizer.MINUS)) {
+                if (term() != d) {
+                    throw new ParseError(ParseError.Code.SUBTRACT_DIMENSION_MISMATCH, at);
+                }
+            } else {
+                break;
+            }
+        }
+        return d;
+    }
+
+    private long term() {
+        long d = factor();
+
+        while (true) {
+            // Operator, or the start of the right factor for implicit multiplication
+            int at = startOf();
+            if (match(ExpressionTokenizer.STAR)) {
+                d = multiply(d, factor(), at);
+            } else if (match(ExpressionTokenizer.SLASH)) {
+                d = divide(d, factor(), at);
+            } else if (isImplicitMulAhead()) {
+                d = multiply(d, factor(), at);
+            } else {
+                break;
+            }
+        }
+        return d;
+    }
+
+    // Signs only change the value, so they are skipped
+    private long factor() {
+        readSigns();
+
+        long d = primary();
+
+        int caret = startOf();
+        if (match(ExpressionTokenizer.CARET)) {
+            int exp = readExponent(caret);
+            d = exp == 0 ? UnitDimension.DIMENSIONLESS.bits() : pow(d, exp, caret);
+        }
+        return d;
+    }
+
+    private long primary() {
+        int start = startOf();
+
+        switch (kind()) {
+            case ExpressionTokenizer.END -> throw new ParseError(ParseError.Code.UNEXPECTED_END, start);
+            case ExpressionTokenizer.LPAREN -> {
+                tok++;
+                long inside = expression();
+                if (!match(ExpressionTokenizer.RPAREN)) {
+                    throw new ParseError(ParseError.Code.MISSING_CLOSING_PARENTHESIS, startOf());
+                }
+                return inside;
+            }
+            case ExpressionTokenizer.NUMBER -> {
+                checkNumber(start, tokens.end(tok));
+                tok++;
+                long d = UnitDimension.DIMENSIONLESS.bits();
+
+                // Numbers & units together
+                while (kind() == ExpressionTokenizer.SYMBOL) {
+                    int at = startOf();
+                    d = multiply(d, symbol(), at);
+                }
+                return d;
+            }
+            case ExpressionTokenizer.SYMBOL -> {
+                return symbol();
+            }
+            default -> throw new ParseError(ParseError.Code.UNEXPECTED_CHARACTER, start,
+                    String.valueOf(input.charAt(start)));
+        }
+    }
+
+    // Number token input[start, end): accepts exactly what Double.parseDouble accepts
+    private void checkNumber(int start, int end) {
+        boolean valid = false;   // at least one ASCII digit in the mantissa
+        boolean nonAscii = false;
+        boolean expDigits = true;
+
+        int pos = start;
+        while (pos < end && input.charAt(pos) != 'e' && input.charAt(pos) != 'E') {
+            char c = input.charAt(pos++);
+            if (c >= '0' && c <= '9') {
+                valid = true;
+            } else if (c != '.') {
+                nonAscii = true;
+            }
+        }
+        if (pos < end) {
+            pos++;   // e or E
+            if (pos < end && (input.charAt(pos) == '+' || input.charAt(pos) == '-')) {
+                pos++;
+            }
+            expDigits = pos < end;
+            for (; pos < end; pos++) {
+                char d = input.charAt(pos);
+                if (d < '0' || d > '9') {
+                    nonAscii = true;
+                }
+            }
+        }
+
+        if (!valid || !expDigits || nonAscii) {
+            throw new ParseError(ParseError.Code.INVALID_NUMBER, start);
+        }
+    }
+
+    private long symbol() {
+        int start = startOf();
+        int end = tokens.end(tok);
+        tok++;
+
+        UnitDimension dim = (resolver == null)
+                ? UnitRegistry.findSymbol(input, start, end)
+                : resolver.apply(input.substring(start, end));
+        if (dim == null) {
+            throw new ParseError(ParseError.Code.UNKNOWN_SYMBOL, start, input.substring(start, end));
+        }
+        return dim.bits();
+    }
+}
@@ -0,0 +1,93 @@
+package org.example.unitcalculator_2;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/*****************************************************************
+ Bounded, thread-safe LRU cache of compiled expressions
+ keyed by the source text
+ *******************************************************************/
+public final class ExpressionCache {
+
+    private final int maxEntries;
+    private final Map<String, CompiledExpression> entries;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public ExpressionCache(int maxEntries) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("Cache size must be positive");
+        }
+        this.maxEntries = maxEntries;
+
+        // access order -> iteration starts at the least recently used entry
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CompiledExpression> eldest) {
+                if (size() > ExpressionCache.this.maxEntries) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    public Quantity evaluate(String input) {
+        return get(input).evaluate();
+    }
+
+    public CompiledExpression get(String input) {
+        if (input == null) {
+            throw new IllegalArgumentException("Input is null");
+        }
+
+        CompiledExpression cached;
+        synchronized (entries) {
+            cached = entries.get(input);
+        }
+        if (cached != null && cached.isCurrent()) {
+            hits.increment();
+            return cached;
+        }
+
+        // Compile outside the lock so one slow expression doesn't block other threads
+        misses.increment();
+        CompiledExpression compiled = QuantityExpressionParser.compile(input);
+        synchronized (entries) {
+            entries.put(input, compiled);
+        }
+        return compiled;
+    }
+
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+}
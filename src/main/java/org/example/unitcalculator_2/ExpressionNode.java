@@ -0,0 +1,83 @@
+package org.example.unitcalculator_2;
+
+/*****************************************************************
+ Expression tree built by ExpressionTreeParser
+
+ evaluate() applies the same Quantity operations in the same order
+ as QuantityExpressionParser.parse, so an unoptimized tree gives a
+ bit-identical result. ExpressionOptimizer rewrites trees into
+ fewer nodes.
+ *******************************************************************/
+public sealed interface ExpressionNode {
+
+    Quantity evaluate();
+
+    // Number as written in the input (dimensionless)
+    record Literal(double value) implements ExpressionNode {
+        @Override
+        public Quantity evaluate() {
+            return new Quantity(value, UnitDimension.DIMENSIONLESS);
+        }
+    }
+
+    // Unit symbol, resolved while parsing
+    record Symbol(String name, UnitDimension dimension) implements ExpressionNode {
+        @Override
+        public Quantity evaluate() {
+            return new Quantity(1.0, dimension);
+        }
+    }
+
+    // Folded subtree: a value with its dimension
+    record Constant(double value, UnitDimension dimension) implements ExpressionNode {
+        @Override
+        public Quantity evaluate() {
+            return new Quantity(value, dimension);
+        }
+    }
+
+    // op is one of + - * /; position is where the operator was in the input
+    record Binary(char op, ExpressionNode left, ExpressionNode right, int position) implements ExpressionNode {
+        @Override
+        public Quantity evaluate() {
+            Quantity l = left.evaluate();
+            Quantity r = right.evaluate();
+            return apply(op, l, r, position);
+        }
+
+        static Quantity apply(char op, Quantity l, Quantity r, int position) {
+            return switch (op) {
+                case '+' -> {
+                    if (!l.getDimension().equals(r.getDimension())) {
+                        throw new ParseError(ParseError.Code.ADD_DIMENSION_MISMATCH, position);
+                    }
+                    yield l.add(r);
+                }
+                case '-' -> {
+                    if (!l.getDimension().equals(r.getDimension())) {
+                        throw new ParseError(ParseError.Code.SUBTRACT_DIMENSION_MISMATCH, position);
+                    }
+                    yield l.subtract(r);
+                }
+                case '*' -> ExpressionReader.multiply(l, r, position);
+                case '/' -> ExpressionReader.divide(l, r, position);
+                default -> throw new IllegalStateException("Unknown operator: " + op);
+            };
+        }
+    }
+
+    // position is where the ^ was in the input
+    record Power(ExpressionNode base, int exponent, int position) implements ExpressionNode {
+        @Override
+        public Quantity evaluate() {
+            return ExpressionReader.pow(base.evaluate(), exponent, position);
+        }
+    }
+
+    record Negate(ExpressionNode operand) implements ExpressionNode {
+        @Override
+        public Quantity evaluate() {
+            return operand.evaluate().negate();
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package org.example.unitcalculator_2;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/*****************************************************************
+ Rewrites an ExpressionNode tree into fewer nodes
+
+ STRICT folds every subtree whose inputs are known with the same
+ Quantity operations in the same order as parse, so the result is
+ bit-identical to QuantityExpressionParser.parse.
+
+ FAST may change rounding in the last bits:
+ - a chain like 3 kg * (9.81 m / s^2) * 2 is flattened; unit factors
+   only contribute to one precomputed dimension, the numbers are
+   folded into one running value in source order. A chain whose
+   regrouping overflows the value or the dimension is folded as
+   STRICT instead
+ - integer powers use exponentiation by squaring, not Math.pow
+
+ The grammar has no variables yet, so both modes end in a single
+ Constant; the rewrite rules keep working on subtrees once it does.
+ *******************************************************************/
+public final class ExpressionOptimizer {
+
+    public enum Mode { STRICT, FAST }
+
+    private ExpressionOptimizer() { }
+
+    public static ExpressionNode optimize(ExpressionNode node, Mode mode) {
+        return mode == Mode.STRICT ? strict(node) : fast(node);
+    }
+
+    // Parse, optimize and evaluate in one call
+    public static Quantity evaluate(String input, Mode mode) {
+        return optimize(ExpressionTreeParser.parse(input), mode).evaluate();
+    }
+
+    //**************************************************************************
+    // STRICT
+    //**************************************************************************
+    private static ExpressionNode strict(ExpressionNode node) {
+        return switch (node) {
+            case ExpressionNode.Literal n -> new ExpressionNode.Constant(n.value(), UnitDimension.DIMENSIONLESS);
+            case ExpressionNode.Symbol s -> new ExpressionNode.Constant(1.0, s.dimension());
+            case ExpressionNode.Constant c -> c;
+            case ExpressionNode.Binary b -> {
+                ExpressionNode l = strict(b.left());
+                ExpressionNode r = strict(b.right());
+                if (l instanceof ExpressionNode.Constant lc && r instanceof ExpressionNode.Constant rc) {
+                    yield constant(ExpressionNode.Binary.apply(b.op(), lc.evaluate(), rc.evaluate(), b.position()));
+                }
+                yield new ExpressionNode.Binary(b.op(), l, r, b.position());
+            }
+            case ExpressionNode.Power p -> {
+                ExpressionNode base = strict(p.base());
+                if (base instanceof ExpressionNode.Constant c) {
+                    yield constant(ExpressionReader.pow(c.evaluate(), p.exponent(), p.position()));
+                }
+                yield new ExpressionNode.Power(base, p.exponent(), p.position());
+            }
+            case ExpressionNode.Negate n -> {
+                ExpressionNode operand = strict(n.operand());
+                if (operand instanceof ExpressionNode.Constant c) {
+                    yield new ExpressionNode.Constant(-c.value(), c.dimension());
+                }
+                yield new ExpressionNode.Negate(operand);
+            }
+        };
+    }
+
+    //**************************************************************************
+    // FAST
+    //**************************************************************************
+    private static ExpressionNode fast(ExpressionNode node) {
+        return switch (node) {
+            case ExpressionNode.Literal n -> new ExpressionNode.Constant(n.value(), UnitDimension.DIMENSIONLESS);
+            case ExpressionNode.Symbol s -> new ExpressionNode.Constant(1.0, s.dimension());
+            case ExpressionNode.Constant c -> c;
+            case ExpressionNode.Binary b when b.op() == '*' || b.op() == '/' -> fastChain(b);
+            case ExpressionNode.Binary b -> {
+                ExpressionNode l = fast(b.left());
+                ExpressionNode r = fast(b.right());
+                if (l instanceof ExpressionNode.Constant lc && r instanceof ExpressionNode.Constant rc) {
+                    yield constant(ExpressionNode.Binary.apply(b.op(), lc.evaluate(), rc.evaluate(), b.position()));
+                }
+                yield new ExpressionNode.Binary(b.op(), l, r, b.position());
+            }
+            case ExpressionNode.Power p -> {
+                ExpressionNode base = fast(p.base());
+                if (base instanceof ExpressionNode.Constant c) {
+                    yield power(c, p.exponent(), p.position());
+                }
+                yield new ExpressionNode.Power(base, p.exponent(), p.position());
+            }
+            case ExpressionNode.Negate n -> {
+                ExpressionNode operand = fast(n.operand());
+                if (operand instanceof ExpressionNode.Constant c) {
+                    yield new ExpressionNode.Constant(-c.value(), c.dimension());
+                }
+                yield new ExpressionNode.Negate(operand);
+            }
+        };
+    }
+
+    // One factor of a flattened chain; position is the operator that applies it
+    private record Factor(ExpressionNode node, boolean divides, int position) {}
+
+    // Flatten a * / chain: one dimension, one running value in source order
+    private static ExpressionNode fastChain(ExpressionNode.Binary chain) {
+        List<Factor> factors = new ArrayList<>();
+        flatten(chain, false, -1, factors);
+
+        long dim = UnitDimension.DIMENSIONLESS.bits();
+        double value = 1.0;
+        List<Factor> rest = new ArrayList<>();
+
+        for (Factor factor : factors) {
+            ExpressionNode f = fast(factor.node());
+            if (f instanceof ExpressionNode.Constant c) {
+                long bits = c.dimension().bits();
+                try {
+                    dim = factor.divides() ? UnitDimension.divideBits(dim, bits) : UnitDimension.multiplyBits(dim, bits);
+                } catch (IllegalArgumentException e) {
+                    // Regrouped exponents left the range; STRICT tells whether the input does
+                    return strict(chain);
+                }
+                // unit factors are exactly 1.0 and drop out of the value
+                if (c.value() != 1.0) {
+                    value = factor.divides() ? value / c.value() : value * c.value();
+                }
+            } else {
+                rest.add(new Factor(f, factor.divides(), factor.position()));
+            }
+        }
+        if (!Double.isFinite(value)) {
+            return strict(chain);
+        }
+
+        ExpressionNode result = new ExpressionNode.Constant(value, UnitDimension.ofBits(dim));
+        for (Factor factor : rest) {
+            result = new ExpressionNode.Binary(factor.divides() ? '/' : '*', result, factor.node(), factor.position());
+        }
+        return result;
+    }
+
+    private static void flatten(ExpressionNode node, boolean divides, int position, List<Factor> factors) {
+        if (node instanceof ExpressionNode.Binary b && (b.op() == '*' || b.op() == '/')) {
+            flatten(b.left(), divides, position, factors);
+            flatten(b.right(), b.op() == '/' != divides, b.position(), factors);
+        } else {
+            factors.add(new Factor(node, divides, position));
+        }
+    }
+
+    private static ExpressionNode power(ExpressionNode.Constant base, int exponent, int position) {
+        if (exponent == 0) {
+            return new ExpressionNode.Constant(1.0, UnitDimension.DIMENSIONLESS);
+        }
+        UnitDimension dim = UnitDimension.ofBits(ExpressionReader.pow(base.dimension().bits(), exponent, position));
+
+        long n = Math.abs((long) exponent);
+        double x = base.value();
+        double result = 1.0;
+        while (n > 0) {
+            if ((n & 1) != 0) {
+                result *= x;
+            }
+            x *= x;
+            n >>= 1;
+        }
+        return new ExpressionNode.Constant(exponent < 0 ? 1.0 / result : result, dim);
+    }
+
+    private static ExpressionNode.Constant constant(Quantity q) {
+        return new ExpressionNode.Constant(q.getValue(), q.getDimension());
+    }
+}
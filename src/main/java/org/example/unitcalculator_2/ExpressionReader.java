@@ -0,0 +1,140 @@
+package org.example.unitcalculator_2;
+
+/*****************************************************************
+ Token walking shared by the readers of the QuantityExpressionParser
+ grammar: QuantityExpressionParser, QuantityEvaluator,
+ DimensionChecker and ExpressionTreeParser
+
+ Holds the position in an ExpressionTokenizer token stream and the
+ parts of the grammar every reader reads the same way: the signs
+ before a factor, the exponent after ^ and the start of an implicit
+ multiplication. Dimension overflow from UnitDimension is turned
+ into a ParseError at the operator or ^ here as well, for the
+ readers and for ExpressionNode.
+ *******************************************************************/
+abstract class ExpressionReader {
+
+    final ExpressionTokenizer tokens;
+    String input;
+    int tok;   // index of the next token
+
+    ExpressionReader(ExpressionTokenizer tokens) {
+        this.tokens = tokens;
+        this.input = tokens.text();
+    }
+
+    // Signs before a factor; true if they negate it. Chained signs must touch: "- -3" is not a factor
+    final boolean readSigns() {
+        boolean negate = false;
+        int signEnd = -1;
+        while (ExpressionTokenizer.isSign(kind()) && (signEnd < 0 || startOf() == signEnd)) {
+            if (kind() == ExpressionTokenizer.MINUS) {
+                negate = !negate;
+            }
+            signEnd = tokens.end(tok);
+            tok++;
+        }
+        return negate;
+    }
+
+    // Exponent after the ^ at caret
+    final int readExponent(int caret) {
+        int start = startOf();
+        boolean negative = false;
+
+        if (match(ExpressionTokenizer.MINUS)) {
+            negative = true;
+        } else if (match(ExpressionTokenizer.PLUS)) {
+            // positive index
+        }
+
+        // The tokenizer only lexes INTEGER where the digits may follow
+        if (kind() != ExpressionTokenizer.INTEGER) {
+            throw new ParseError(ParseError.Code.INVALID_EXPONENT, start);
+        }
+
+        long value = 0;
+        for (int i = startOf(); i < tokens.end(tok); i++) {
+            int d = input.charAt(i) - '0';
+            value = value * 10 + d;
+            if (value > Integer.MAX_VALUE) {
+                throw new ParseError(ParseError.Code.EXPONENT_OUT_OF_RANGE, caret);
+            }
+        }
+        tok++;
+
+        return (int) (negative ? -value : value);
+    }
+
+    final boolean isImplicitMulAhead() {
+        int k = kind();
+        return k == ExpressionTokenizer.LPAREN || k == ExpressionTokenizer.NUMBER || k == ExpressionTokenizer.SYMBOL;
+    }
+
+    final boolean match(int kind) {
+        if (kind() == kind) {
+            tok++;
+            return true;
+        }
+        return false;
+    }
+
+    final int kind() {
+        return tokens.kind(tok);
+    }
+
+    final int startOf() {
+        return tokens.start(tok);
+    }
+
+    //**************************************************************************
+    // Dimension overflow from UnitDimension, reported at the operator or ^
+    //**************************************************************************
+    static long multiply(long a, long b, int at) {
+        try {
+            return UnitDimension.multiplyBits(a, b);
+        } catch (IllegalArgumentException e) {
+            throw new ParseError(ParseError.Code.EXPONENT_OUT_OF_RANGE, at);
+        }
+    }
+
+    static long divide(long a, long b, int at) {
+        try {
+            return UnitDimension.divideBits(a, b);
+        } catch (IllegalArgumentException e) {
+            throw new ParseError(ParseError.Code.EXPONENT_OUT_OF_RANGE, at);
+        }
+    }
+
+    static long pow(long a, int exponent, int at) {
+        try {
+            return UnitDimension.powBits(a, exponent);
+        } catch (IllegalArgumentException e) {
+            throw new ParseError(ParseError.Code.EXPONENT_OUT_OF_RANGE, at);
+        }
+    }
+
+    static Quantity multiply(Quantity a, Quantity b, int at) {
+        try {
+            return a.multiply(b);
+        } catch (IllegalArgumentException e) {
+            throw new ParseError(ParseError.Code.EXPONENT_OUT_OF_RANGE, at);
+        }
+    }
+
+    static Quantity divide(Quantity a, Quantity b, int at) {
+        try {
+            return a.divide(b);
+        } catch (IllegalArgumentException e) {
+            throw new ParseError(ParseError.Code.EXPONENT_OUT_OF_RANGE, at);
+        }
+    }
+
+    static Quantity pow(Quantity base, int exponent, int at) {
+        try {
+            return base.pow(exponent);
+        } catch (IllegalArgumentException e) {
+            throw new ParseError(ParseError.Code.EXPONENT_OUT_OF_RANGE, at);
+        }
+    }
+}
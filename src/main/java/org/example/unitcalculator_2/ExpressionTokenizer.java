@@ -0,0 +1,343 @@
+package org.example.unitcalculator_2;
+
+import java.util.Arrays;
+
+/*****************************************************************
+ Token stream for the QuantityExpressionParser grammar
+
+ Tokens live in one int array, three ints each: kind, start, end
+ (end exclusive). Spaces are skipped, the last token is always END
+ at the input length. ASCII characters are classified with one
+ table lookup; anything else falls back to the same Character
+ checks the parser has always used, so the tokens split the input
+ exactly where the hand-written scanner did.
+
+ After ^ the digits of the exponent are lexed as INTEGER (only
+ digits, and right after a sign if there is one), since 2.5 or 2e3
+ there is an exponent followed by more input, not one number.
+
+ relex() updates the tokens after an edit by lexing only from the
+ token before the edit until the stream lines up with the old one
+ again. Not thread-safe: one instance per text field or thread
+ (see forCurrentThread).
+ *******************************************************************/
+public final class ExpressionTokenizer {
+
+    public static final int NUMBER = 0;
+    public static final int INTEGER = 1;   // exponent digits after ^
+    public static final int SYMBOL = 2;
+    public static final int PLUS = 3;
+    public static final int MINUS = 4;
+    public static final int STAR = 5;
+    public static final int SLASH = 6;
+    public static final int CARET = 7;
+    public static final int LPAREN = 8;
+    public static final int RPAREN = 9;
+    public static final int OTHER = 10;    // any other single character
+    public static final int END = 11;
+
+    // Character classes
+    private static final byte C_OTHER = 0;
+    private static final byte C_SPACE = 1;
+    private static final byte C_DIGIT = 2;
+    private static final byte C_LETTER = 3;
+    private static final byte C_DOT = 4;
+    private static final byte C_PUNCT = 5;   // + - * / ^ ( )
+
+    private static final byte[] ASCII = new byte[128];
+    static {
+        for (char c = 0; c < 128; c++) {
+            ASCII[c] = classify(c);
+        }
+    }
+
+    private static final ThreadLocal<ExpressionTokenizer> PER_THREAD =
+            ThreadLocal.withInitial(ExpressionTokenizer::new);
+
+    private static final int STRIDE = 3;
+
+    private String text = "";
+    private int[] tokens = new int[16 * STRIDE];
+    private int count;
+
+    // Second buffer for relex, swapped with tokens
+    private int[] spare = new int[16 * STRIDE];
+
+    public static ExpressionTokenizer forCurrentThread() {
+        return PER_THREAD.get();
+    }
+
+    public ExpressionTokenizer tokenize(CharSequence input) {
+        text = input.toString();
+        count = lex(text, 0, tokens, 0, null, 0, 0, 0);
+        return this;
+    }
+
+    // Relex after the text changed to newText; the edited region is found by comparing with the old text
+    public ExpressionTokenizer update(CharSequence newText) {
+        String next = newText.toString();
+        String old = text;
+        int max = Math.min(old.length(), next.length());
+
+        int prefix = 0;
+        while (prefix < max && old.charAt(prefix) == next.charAt(prefix)) {
+            prefix++;
+        }
+        int suffix = 0;
+        while (suffix < max - prefix
+                && old.charAt(old.length() - 1 - suffix) == next.charAt(next.length() - 1 - suffix)) {
+            suffix++;
+        }
+        return relex(next, prefix, old.length() - suffix, next.length() - suffix);
+    }
+
+    /***********************************************************************
+    Old text [editStart, oldEnd) was replaced by newText [editStart, newEnd).
+    Tokens starting before the edit are kept, lexing restarts at the last
+    of them (it may grow into the edit) and stops at the first token that
+    starts where an old token after the edit started, shifted by the size
+    change, with neither inside an exponent. The rest is copied over.
+    ***********************************************************************/
+    public ExpressionTokenizer relex(CharSequence newText, int editStart, int oldEnd, int newEnd) {
+        if (count == 0) {
+            return tokenize(newText);
+        }
+        String next = newText.toString();
+
+        int restart = 0;
+        for (int i = 0; i < count - 1 && start(i) < editStart; i++) {
+            restart = i;
+        }
+        // Inside ^[sign]digits the kind depends on the caret, so start from the caret
+        if (restart >= 1 && kind(restart - 1) == CARET) {
+            restart -= 1;
+        } else if (restart >= 2 && kind(restart - 2) == CARET && isSign(kind(restart - 1))) {
+            restart -= 2;
+        }
+
+        int from = (restart == 0) ? 0 : start(restart);
+        int[] old = tokens;
+        int[] out = (spare.length >= old.length) ? spare : new int[old.length];
+        System.arraycopy(old, 0, out, 0, restart * STRIDE);
+
+        text = next;
+        count = lex(next, from, out, restart, old, count, oldEnd, newEnd - oldEnd);
+        spare = old;
+        return this;
+    }
+
+    // Independent copy, e.g. to hand the current tokens to another thread
+    public ExpressionTokenizer copy() {
+        ExpressionTokenizer c = new ExpressionTokenizer();
+        c.text = text;
+        c.tokens = Arrays.copyOf(tokens, Math.max(count * STRIDE, STRIDE));
+        c.count = count;
+        return c;
+    }
+
+    public String text() {
+        return text;
+    }
+
+    // Number of tokens, including the final END
+    public int count() {
+        return count;
+    }
+
+    public int kind(int i) {
+        return tokens[i * STRIDE];
+    }
+
+    public int start(int i) {
+        return tokens[i * STRIDE + 1];
+    }
+
+    public int end(int i) {
+        return tokens[i * STRIDE + 2];
+    }
+
+    //**************************************************************************
+    // Lexer
+    //**************************************************************************
+
+    /***********************************************************************
+    Lex s from pos into out, starting at token index n. With old tokens
+    given, stop as soon as a token would start at an old token's start
+    plus delta (and at or after oldEnd) in the same lexer state, and copy
+    the remaining old tokens shifted by delta. Returns the token count.
+    ***********************************************************************/
+    private int lex(String s, int pos, int[] out, int n, int[] old, int oldCount, int oldEnd, int delta) {
+        int len = s.length();
+        int j = n;   // next old token that could line up
+
+        while (true) {
+            // Sign right after ^: the exponent digits must follow immediately
+            boolean afterCaretSign = n >= 2 && isSign(out[(n - 1) * STRIDE]) && out[(n - 2) * STRIDE] == CARET;
+            if (afterCaretSign && pos < len && classOf(s.charAt(pos)) == C_DIGIT) {
+                int end = digits(s, pos);
+                out = grow(out, n);
+                n = emit(out, n, INTEGER, pos, end);
+                pos = end;
+                continue;
+            }
+
+            while (pos < len && classOf(s.charAt(pos)) == C_SPACE) {
+                pos++;
+            }
+            boolean afterCaret = n >= 1 && out[(n - 1) * STRIDE] == CARET;
+
+            if (old != null && !afterCaret && !afterCaretSign && pos - delta >= oldEnd) {
+                while (j < oldCount && old[j * STRIDE + 1] + delta < pos) {
+                    j++;
+                }
+                if (j < oldCount && old[j * STRIDE + 1] + delta == pos && plainState(old, j)) {
+                    int rest = oldCount - j;
+                    out = grow(out, n + rest - 1);
+                    for (int k = 0; k < rest; k++) {
+                        int o = (j + k) * STRIDE;
+                        emit(out, n + k, old[o], old[o + 1] + delta, old[o + 2] + delta);
+                    }
+                    return finish(out, n + rest);
+                }
+            }
+
+            out = grow(out, n);
+            if (pos >= len) {
+                n = emit(out, n, END, len, len);
+                return finish(out, n);
+            }
+
+            char c = s.charAt(pos);
+            int start = pos;
+            int kind;
+            switch (classOf(c)) {
+                case C_DIGIT -> {
+                    kind = afterCaret ? INTEGER : NUMBER;
+                    pos = afterCaret ? digits(s, pos) : number(s, pos);
+                }
+                case C_DOT -> {
+                    kind = NUMBER;
+                    pos = number(s, pos);
+                }
+                case C_LETTER -> {
+                    kind = SYMBOL;
+                    do {
+                        pos++;
+                    } while (pos < len && classOf(s.charAt(pos)) == C_LETTER);
+                }
+                case C_PUNCT -> {
+                    kind = punctuation(c);
+                    pos++;
+                }
+                default -> {
+                    kind = OTHER;
+                    pos++;
+                }
+            }
+            n = emit(out, n, kind, start, pos);
+        }
+    }
+
+    // Old token j was lexed outside an exponent
+    private static boolean plainState(int[] old, int j) {
+        if (j >= 1 && old[(j - 1) * STRIDE] == CARET) {
+            return false;
+        }
+        return !(j >= 2 && isSign(old[(j - 1) * STRIDE]) && old[(j - 2) * STRIDE] == CARET);
+    }
+
+    // The parser's number scanner: digits, one dot, then e|E [sign] digits
+    private static int number(String s, int pos) {
+        int len = s.length();
+        boolean hasDot = false;
+        while (pos < len) {
+            char c = s.charAt(pos);
+            if (classOf(c) == C_DIGIT) {
+                pos++;
+            } else if (c == '.' && !hasDot) {
+                hasDot = true;
+                pos++;
+            } else {
+                break;
+            }
+        }
+        if (pos < len && (s.charAt(pos) == 'e' || s.charAt(pos) == 'E')) {
+            pos++;
+            if (pos < len && (s.charAt(pos) == '+' || s.charAt(pos) == '-')) {
+                pos++;
+            }
+            pos = digits(s, pos);
+        }
+        return pos;
+    }
+
+    private static int digits(String s, int pos) {
+        while (pos < s.length() && classOf(s.charAt(pos)) == C_DIGIT) {
+            pos++;
+        }
+        return pos;
+    }
+
+    private static int punctuation(char c) {
+        return switch (c) {
+            case '+' -> PLUS;
+            case '-' -> MINUS;
+            case '*' -> STAR;
+            case '/' -> SLASH;
+            case '^' -> CARET;
+            case '(' -> LPAREN;
+            default -> RPAREN;
+        };
+    }
+
+    static boolean isSign(int kind) {
+        return kind == PLUS || kind == MINUS;
+    }
+
+    private static int emit(int[] out, int n, int kind, int start, int end) {
+        int o = n * STRIDE;
+        out[o] = kind;
+        out[o + 1] = start;
+        out[o + 2] = end;
+        return n + 1;
+    }
+
+    // Room for token index n
+    private static int[] grow(int[] out, int n) {
+        if ((n + 1) * STRIDE <= out.length) {
+            return out;
+        }
+        return Arrays.copyOf(out, Math.max(out.length * 2, (n + 1) * STRIDE));
+    }
+
+    private int finish(int[] out, int n) {
+        tokens = out;
+        return n;
+    }
+
+    //**************************************************************************
+    // Character classes
+    //**************************************************************************
+    private static byte classOf(char c) {
+        return c < 128 ? ASCII[c] : classify(c);
+    }
+
+    private static byte classify(char c) {
+        if (Character.isWhitespace(c)) {
+            return C_SPACE;
+        }
+        if (Character.isDigit(c)) {
+            return C_DIGIT;
+        }
+        if (Character.isLetter(c) || c == 'μ' || c == 'Ω' || c == 'Φ') {
+            return C_LETTER;
+        }
+        if (c == '.') {
+            return C_DOT;
+        }
+        if (c == '+' || c == '-' || c == '*' || c == '/' || c == '^' || c == '(' || c == ')') {
+            return C_PUNCT;
+        }
+        return C_OTHER;
+    }
+}
@@ -0,0 +1,139 @@
+package org.example.unitcalculator_2;
+
+/*****************************************************************
+ Same grammar and ExpressionTokenizer tokens as
+ QuantityExpressionParser, but builds an ExpressionNode tree
+ instead of evaluating while it reads.
+
+ Symbols are resolved here, so unknown symbols fail at parse time;
+ dimension mismatches surface when the tree is evaluated or folded.
+ For input with several problems the reported one can therefore
+ differ from parse(); valid input gives the same result.
+ *******************************************************************/
+public final class ExpressionTreeParser extends ExpressionReader {
+
+    private ExpressionTreeParser(ExpressionTokenizer tokens) {
+        super(tokens);
+    }
+
+    public static ExpressionNode parse(String input) {
+        if (input == null) {
+            throw new ParseError(ParseError.Code.NULL_INPUT, -1);
+        }
+        ExpressionTreeParser p = new ExpressionTreeParser(ExpressionTokenizer.forCurrentThread().tokenize(input));
+        ExpressionNode result = p.parseExpression();
+
+        if (p.kind() != ExpressionTokenizer.END) {
+            throw new ParseError(ParseError.Code.TRAILING_CHARACTERS, p.startOf());
+        }
+        return result;
+    }
+
+    private ExpressionNode parseExpression() {
+        ExpressionNode result = parseTerm();
+        while (true) {
+            int at = startOf();
+            if (match(ExpressionTokenizer.PLUS)) {
+                result = new ExpressionNode.Binary('+', result, parseTerm(), at);
+            } else if (match(ExpressionTokenizer.MINUS)) {
+                result = new ExpressionNode.Binary('-', result, parseTerm(), at);
+            } else {
+                break;
+            }
+        }
+        return result;
+    }
+
+    private ExpressionNode parseTerm() {
+        ExpressionNode result = parseFactor();
+
+        while (true) {
+            int at = startOf();
+            if (match(ExpressionTokenizer.STAR)) {
+                result = new ExpressionNode.Binary('*', result, parseFactor(), at);
+            } else if (match(ExpressionTokenizer.SLASH)) {
+                result = new ExpressionNode.Binary('/', result, parseFactor(), at);
+            } else if (isImplicitMulAhead()) {
+                result = new ExpressionNode.Binary('*', result, parseFactor(), at);
+            } else {
+                break;
+            }
+        }
+        return result;
+    }
+
+    // Factor = unary
+    private ExpressionNode parseFactor() {
+        boolean negate = readSigns();
+
+        ExpressionNode base = parsePrimary();
+
+        int caret = startOf();
+        if (match(ExpressionTokenizer.CARET)) {
+            base = new ExpressionNode.Power(base, readExponent(caret), caret);
+        }
+
+        if (negate) {
+            base = new ExpressionNode.Negate(base);
+        }
+        return base;
+    }
+
+    private ExpressionNode parsePrimary() {
+        int start = startOf();
+
+        switch (kind()) {
+            case ExpressionTokenizer.END -> throw new ParseError(ParseError.Code.UNEXPECTED_END, start);
+            case ExpressionTokenizer.LPAREN -> {
+                tok++;
+                ExpressionNode inside = parseExpression();
+                if (!match(ExpressionTokenizer.RPAREN)) {
+                    throw new ParseError(ParseError.Code.MISSING_CLOSING_PARENTHESIS, startOf());
+                }
+                return inside;
+            }
+            case ExpressionTokenizer.NUMBER -> {
+                ExpressionNode q = new ExpressionNode.Literal(parseNumber());
+
+                // Numbers & units together
+                while (kind() == ExpressionTokenizer.SYMBOL) {
+                    int at = startOf();
+                    q = new ExpressionNode.Binary('*', q, parseSymbol(), at);
+                }
+                return q;
+            }
+            case ExpressionTokenizer.SYMBOL -> {
+                return parseSymbol();
+            }
+            default -> throw new ParseError(ParseError.Code.UNEXPECTED_CHARACTER, start,
+                    String.valueOf(input.charAt(start)));
+        }
+    }
+
+    // Number token: digits [. digits] [e|E [+|-] digits]
+    private double parseNumber() {
+        int start = startOf();
+        String s = input.substring(start, tokens.end(tok));
+        tok++;
+
+        if (s.equals(".")) {
+            throw new ParseError(ParseError.Code.INVALID_NUMBER, start);
+        }
+        try {
+            return Double.parseDouble(s);
+        } catch (NumberFormatException e) {
+            throw new ParseError(ParseError.Code.INVALID_NUMBER, start);
+        }
+    }
+
+    private ExpressionNode.Symbol parseSymbol() {
+        int start = startOf();
+        String sym = input.substring(start, tokens.end(tok));
+        tok++;
+        UnitDimension dim = UnitRegistry.findSymbol(sym);
+        if (dim == null) {
+            throw new ParseError(ParseError.Code.UNKNOWN_SYMBOL, start, sym);
+        }
+        return new ExpressionNode.Symbol(sym, dim);
+    }
+}
@@ -1,7 +1,9 @@
 package org.example.unitcalculator_2;
 
+import javafx.application.Platform;
 import javafx.fxml.FXML;
 import javafx.scene.control.Button;
+import javafx.scene.control.CheckBox;
 import javafx.scene.control.ComboBox;
 import javafx.scene.control.Label;
 import javafx.scene.control.TextField;
@@ -9,11 +11,20 @@ import javafx.scene.layout.AnchorPane;
 import javafx.scene.layout.FlowPane;
 
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class MainController {
 
@@ -29,6 +40,23 @@ public class MainController {
     @FXML private Label baseLabel;
     @FXML private Label statusLabel;
 
+    // Live result mode
+    @FXML private CheckBox liveCheckBox;
+    private static final long LIVE_DEBOUNCE_MS = 150;
+    private static final ScheduledExecutorService LIVE_DEBOUNCER =
+            Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "live-result-debounce");
+                t.setDaemon(true);
+                return t;
+            });
+    private final ExecutorService liveWorkers = Executors.newVirtualThreadPerTaskExecutor();
+    private final AtomicLong liveGeneration = new AtomicLong();
+    private final AtomicReference<Future<?>> liveTask = new AtomicReference<>();
+    private ScheduledFuture<?> liveDebounce;   // FX thread only
+
+    // Tokens of inputField, relexed around each edit; FX thread only
+    private final ExpressionTokenizer inputTokens = new ExpressionTokenizer();
+
 
     // Unit dropdown + description label
     @FXML private ComboBox<String> unitCombo;
@@ -85,22 +113,38 @@ public class MainController {
         // Enter to simplify
         inputField.setOnAction(e -> onSimplify());
 
+        // Live result while typing
+        inputField.textProperty().addListener((obs, oldText, newText) -> {
+            inputTokens.update(newText == null ? "" : newText);
+            if (liveCheckBox != null && liveCheckBox.isSelected()) {
+                scheduleLive(inputTokens.copy());
+            }
+        });
+        if (liveCheckBox != null) {
+            liveCheckBox.setOnAction(e -> {
+                if (liveCheckBox.isSelected()) {
+                    scheduleLive(currentTokens().copy());
+                } else {
+                    cancelLive();
+                }
+            });
+        }
+
         // Unit preset ComboBox
         if (unitCombo != null) {
             unitCombo.getItems().setAll(UNIT_DESCRIPTIONS.keySet());
             unitCombo.setOnAction(e -> onSelectUnit());
         }
 
-        // Load custom units
-        for (CustomUnitStorage.CustomUnit cu : CustomUnitStorage.loadAll()) {
-            try {
-                UnitDimension dim = UnitExpressionParser.parse(cu.expression());
-                UnitRegistry.registerCustom(cu.symbol(), dim);
-                addCustomUnitButton(cu.symbol());
-                customUnits.add(cu);
-            } catch (IllegalArgumentException ex) {
-                ex.printStackTrace();
-            }
+        // Custom units are written in the background; report failures here
+        CustomUnitStorage.setErrorHandler(e ->
+                Platform.runLater(() -> customUnitStatusLabel.setText("Could not save custom units: " + e.getMessage())));
+
+        // Load custom units off the FX thread and follow changes other instances make to the file
+        try {
+            CustomUnitWatcher.start(update -> Platform.runLater(() -> onCustomUnitsChanged(update)));
+        } catch (IOException ex) {
+            customUnitStatusLabel.setText("Could not load custom units: " + ex.getMessage());
         }
         root.setOnKeyPressed(e -> {
             switch (e.getCode()) {
@@ -152,17 +196,30 @@ public class MainController {
     //******************************************************************
     @FXML
     private void onSimplify() {
+        // Enter wins over any live evaluation still in flight
+        cancelLive();
+        applyResult(simplify(currentTokens()));
+    }
+
+    // inputTokens, brought up to date if the field changed without the listener
+    private ExpressionTokenizer currentTokens() {
         String text = inputField.getText();
-        if (text == null || text.trim().isEmpty()) {
-            statusLabel.setText("Please enter an expression.");
-            resultLabel.setText("");
-            resultNameLabel.setText("");
-            baseLabel.setText("");
-            return;
+        return inputTokens.update(text == null ? "" : text);
+    }
+
+    // Label texts for one evaluation; built off the FX thread in live mode
+    private record SimplifyResult(String result, String name, String base, String status) {
+        static final SimplifyResult EMPTY = new SimplifyResult("", "", "", "");
+    }
+
+    private static SimplifyResult simplify(ExpressionTokenizer tokens) {
+        String text = tokens.text();
+        if (text.trim().isEmpty()) {
+            return new SimplifyResult("", "", "", "Please enter an expression.");
         }
 
         try {
-            Quantity q = QuantityExpressionParser.parse(text);
+            Quantity q = QuantityExpressionParser.parse(tokens);
 
             double value = q.getValue();
             UnitDimension dim = q.getDimension();
@@ -171,12 +228,8 @@ public class MainController {
             boolean isSingleSymbol = compact.matches("[A-Za-zμΩΦ]+");
 
             if (dim.isDimensionless()) {
-                String valueStr = formatValue(value);
-                resultLabel.setText(valueStr);
-                resultNameLabel.setText("");
-                baseLabel.setText("1");
-                statusLabel.setText("");
-                return;
+                String valueStr = ValueFormatter.format(value);
+                return new SimplifyResult(valueStr, "", "1", "");
             }
 
             // Find derived units
@@ -188,12 +241,9 @@ public class MainController {
             } else if (derived != null) {
                 displayUnit = derived;
             } else {
-                displayUnit = dim.toBaseString();   // base form
+                displayUnit = UnitRegistry.getDisplayUnit(dim);   // compound or base form
             }
 
-            // base SI form
-            baseLabel.setText(dim.toBaseString());
-
             String name = null;
             if (derived != null) {
                 name = UnitRegistry.getUnitName(derived);
@@ -202,7 +252,7 @@ public class MainController {
                 name = UnitRegistry.getUnitName(baseSymbol);
             }
 
-            String valueStr = formatValue(value);
+            String valueStr = ValueFormatter.format(value);
             String resultText;
 
             if (Math.abs(value - 1.0) < 1e-9) {
@@ -211,41 +261,77 @@ public class MainController {
                 resultText = valueStr + " " + displayUnit;
             }
 
-            resultLabel.setText(resultText);
-            resultNameLabel.setText(name != null ? "(" + name + ")" : "");
-            statusLabel.setText("");
+            // base SI form
+            return new SimplifyResult(resultText,
+                    name != null ? "(" + name + ")" : "",
+                    dim.toBaseString(),
+                    "");
 
         } catch (IllegalArgumentException ex) {
-            resultLabel.setText("");
-            resultNameLabel.setText("");
-            baseLabel.setText("");
-            statusLabel.setText("Error: " + ex.getMessage());
+            return new SimplifyResult("", "", "", "Error: " + ex.getMessage());
         }
     }
 
+    private void applyResult(SimplifyResult r) {
+        resultLabel.setText(r.result());
+        resultNameLabel.setText(r.name());
+        baseLabel.setText(r.base());
+        statusLabel.setText(r.status());
+    }
+
     //******************************************************************
-    // Value formatting in 3 decimal places and scientific notation
+    // Live result: debounce keystrokes, evaluate on a virtual thread,
+    // publish only the newest result
     //******************************************************************
-    private String formatValue(double v) {
-        if (Double.isNaN(v) || Double.isInfinite(v)) {
-            return Double.toString(v);
-        }
+    private void scheduleLive(ExpressionTokenizer tokens) {
+        long generation = liveGeneration.incrementAndGet();
+        cancelPending();
+
+        liveDebounce = LIVE_DEBOUNCER.schedule(() -> {
+            Future<?> task = liveWorkers.submit(() -> evaluateLive(tokens, generation));
+            Future<?> stale = liveTask.getAndSet(task);
+            if (stale != null) {
+                stale.cancel(true);
+            }
+        }, LIVE_DEBOUNCE_MS, TimeUnit.MILLISECONDS);
+    }
 
-        double abs = Math.abs(v);
+    private void evaluateLive(ExpressionTokenizer tokens, long generation) {
+        if (generation != liveGeneration.get()) {
+            return;
+        }
 
-        // range for 3 decimal places
-        if (abs == 0.0 || (abs >= 1e-3 && abs < 1e6)) {
-            String s = String.format(java.util.Locale.US, "%.3f", v);
+        // While typing an empty field isn't an error, just nothing to show
+        SimplifyResult r = tokens.text().isBlank() ? SimplifyResult.EMPTY : simplify(tokens);
 
-            s = s.replaceAll("\\.?0+$", "");
-            return s;
+        if (Thread.currentThread().isInterrupted() || generation != liveGeneration.get()) {
+            return;
         }
+        Platform.runLater(() -> {
+            if (generation == liveGeneration.get()) {
+                applyResult(r);
+            }
+        });
+    }
 
-        // scientific range
-        return String.format(java.util.Locale.US, "%.3e", v);
+    // Invalidate everything scheduled or running so far
+    private void cancelLive() {
+        liveGeneration.incrementAndGet();
+        cancelPending();
+    }
+
+    private void cancelPending() {
+        if (liveDebounce != null) {
+            liveDebounce.cancel(false);
+            liveDebounce = null;
+        }
+        Future<?> running = liveTask.getAndSet(null);
+        if (running != null) {
+            running.cancel(true);
+        }
     }
 
-    private String stripPrefix(String symbol) {
+    private static String stripPrefix(String symbol) {
         if (symbol.length() > 1 && PREFIX_CHARS.contains(symbol.charAt(0))) {
             return symbol.substring(1);
         }
@@ -256,6 +342,7 @@ public class MainController {
     // Basic editing controls
     @FXML
     private void onClearInput() {
+        cancelLive();
         inputField.clear();
         resultLabel.setText("");
         resultNameLabel.setText("");
@@ -372,22 +459,41 @@ public class MainController {
 
         String symbol = last.symbol();
 
-        if (!customUnitPane.getChildren().isEmpty()) {
-            customUnitPane.getChildren().remove(
-                    customUnitPane.getChildren().size() - 1
-            );
-        }
+        removeCustomUnitButton(symbol);
 
         UnitRegistry.unregisterCustom(symbol);
-        CustomUnitStorage.overwriteAll(customUnits);
+        CustomUnitStorage.remove(symbol);
 
         customUnitStatusLabel.setText("Deleted " + symbol);
     }
 
+    private void onCustomUnitsChanged(CustomUnitWatcher.Update update) {
+        for (String symbol : update.removed()) {
+            customUnits.removeIf(cu -> cu.symbol().equals(symbol));
+            removeCustomUnitButton(symbol);
+        }
+
+        CustomUnitLoader.Result loaded = update.loaded();
+        for (CustomUnitStorage.CustomUnit cu : loaded.loaded()) {
+            addCustomUnitButton(cu.symbol());
+            customUnits.add(cu);
+        }
+
+        if (!loaded.errors().isEmpty()) {
+            customUnitStatusLabel.setText(loaded.errors().size() == 1
+                    ? "Not loaded: " + loaded.errors().get(0)
+                    : loaded.errors().size() + " problems loading units, first: " + loaded.errors().get(0));
+        }
+    }
+
     private void addCustomUnitButton(String symbol) {
         Button b = new Button(symbol);
         b.setFocusTraversable(false);
         b.setOnAction(this::onInsertSymbol);
         customUnitPane.getChildren().add(b);
     }
+
+    private void removeCustomUnitButton(String symbol) {
+        customUnitPane.getChildren().removeIf(n -> n instanceof Button b && b.getText().equals(symbol));
+    }
 }
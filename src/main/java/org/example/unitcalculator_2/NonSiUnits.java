@@ -0,0 +1,79 @@
+package org.example.unitcalculator_2;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/*****************************************************************
+ Units outside the SI that UnitConverter understands
+
+ Each one is defined like a custom unit: a number and an expression
+ in SI units or in other units of this table, e.g. ft = 12 in.
+ They are only used for conversions; the calculator's parser still
+ knows just the symbols in UnitRegistry. A registered unit with the
+ same symbol wins. Affine units (°C, °F) are not convertible by a
+ factor and are left out.
+ *******************************************************************/
+final class NonSiUnits {
+
+    private static final Map<String, String> DEFINITIONS = new LinkedHashMap<>();
+
+    static {
+        // Length
+        define("in",  "0.0254 m");
+        define("ft",  "12 in");
+        define("yd",  "3 ft");
+        define("mi",  "1760 yd");
+        define("nmi", "1852 m");
+        define("Å",   "1e-10 m");
+        define("au",  "149597870700 m");
+        define("ly",  "9460730472580800 m");
+
+        // Mass
+        define("g",   "0.001 kg");
+        define("t",   "1000 kg");
+        define("lb",  "0.45359237 kg");
+        define("oz",  "0.0625 lb");
+
+        // Time
+        define("min", "60 s");
+        define("h",   "60 min");
+        define("d",   "24 h");
+
+        // Area, volume
+        define("ha",  "10000 m^2");
+        define("L",   "0.001 m^3");
+        define("gal", "3.785411784 L");
+
+        // Speed, frequency
+        define("kn",  "nmi/h");
+        define("mph", "mi/h");
+        define("rpm", "1/min");
+
+        // Force, pressure
+        define("dyn", "1e-5 N");
+        define("lbf", "4.4482216152605 N");
+        define("bar", "100000 Pa");
+        define("atm", "101325 Pa");
+        define("Torr", "atm/760");
+        define("psi", "lbf/in^2");
+
+        // Energy, power
+        define("eV",  "1.602176634e-19 J");
+        define("cal", "4.184 J");
+        define("erg", "1e-7 J");
+        define("Wh",  "W*h");
+        define("BTU", "1055.05585262 J");
+        define("hp",  "745.69987158227022 W");
+    }
+
+    private NonSiUnits() { }
+
+    private static void define(String symbol, String expression) {
+        DEFINITIONS.put(symbol, expression);
+    }
+
+    // Symbol -> defining expression, in definition order
+    static Map<String, String> definitions() {
+        return DEFINITIONS;
+    }
+}
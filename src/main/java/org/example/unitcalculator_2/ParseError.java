@@ -0,0 +1,76 @@
+package org.example.unitcalculator_2;
+
+/*****************************************************************
+ Failure of a formula, as an error code plus the input position
+
+ No stack trace is captured and the message is only built when
+ getMessage is called, so rejecting invalid input costs about as
+ much as accepting valid input. Still an IllegalArgumentException,
+ so existing catch blocks keep working.
+ *******************************************************************/
+public final class ParseError extends IllegalArgumentException {
+
+    private static final long serialVersionUID = 1L;
+
+    public enum Code {
+        NULL_INPUT,
+        TRAILING_CHARACTERS,
+        UNEXPECTED_END,
+        MISSING_CLOSING_PARENTHESIS,
+        UNEXPECTED_CHARACTER,
+        INVALID_NUMBER,
+        INVALID_EXPONENT,
+        UNKNOWN_SYMBOL,
+        ADD_DIMENSION_MISMATCH,
+        SUBTRACT_DIMENSION_MISMATCH,
+        EXPONENT_OUT_OF_RANGE,
+        CONVERSION_DIMENSION_MISMATCH
+    }
+
+    private final Code code;
+    private final int position;
+    private final String detail;   // offending symbol or character, if any
+
+    ParseError(Code code, int position, String detail) {
+        this.code = code;
+        this.position = position;
+        this.detail = detail;
+    }
+
+    ParseError(Code code, int position) {
+        this(code, position, null);
+    }
+
+    public Code getCode() {
+        return code;
+    }
+
+    // Index into the input where the problem was found, -1 if there is none
+    public int getPosition() {
+        return position;
+    }
+
+    @Override
+    public String getMessage() {
+        return switch (code) {
+            case NULL_INPUT -> "Input is null";
+            case TRAILING_CHARACTERS -> "Unexpected trailing characters at position " + position;
+            case UNEXPECTED_END -> "Unexpected end of input";
+            case MISSING_CLOSING_PARENTHESIS -> "Missing closing parenthesis";
+            case UNEXPECTED_CHARACTER -> "Unexpected character: '" + detail + "' at position " + position;
+            case INVALID_NUMBER -> "Invalid number at position " + position;
+            case INVALID_EXPONENT -> "Invalid exponent at position " + position;
+            case UNKNOWN_SYMBOL -> "Unknown unit symbol: " + detail;
+            case ADD_DIMENSION_MISMATCH -> "Cannot add quantities in different dimensions";
+            case SUBTRACT_DIMENSION_MISMATCH -> "Cannot subtract quantities in different dimensions";
+            case EXPONENT_OUT_OF_RANGE -> "Dimension exponent out of range";
+            case CONVERSION_DIMENSION_MISMATCH -> "Cannot convert " + detail + ": different dimensions";
+        };
+    }
+
+    // Never walk the stack; the code and position say where it failed
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        return this;
+    }
+}
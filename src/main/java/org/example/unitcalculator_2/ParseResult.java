@@ -0,0 +1,22 @@
+package org.example.unitcalculator_2;
+
+// Either the value of a formula or the reason it was rejected (see QuantityExpressionParser.tryParse)
+public record ParseResult(Quantity quantity, ParseError error) {
+
+    static ParseResult success(Quantity quantity) {
+        return new ParseResult(quantity, null);
+    }
+
+    static ParseResult failure(ParseError error) {
+        return new ParseResult(null, error);
+    }
+
+    public boolean isSuccess() {
+        return error == null;
+    }
+
+    // Formats the message on demand
+    public String errorMessage() {
+        return error == null ? null : error.getMessage();
+    }
+}
@@ -0,0 +1,284 @@
+package org.example.unitcalculator_2;
+
+/*****************************************************************
+ Allocation-free evaluation of the QuantityExpressionParser grammar
+
+ Same grammar and results as QuantityExpressionParser.parse, read
+ from the same ExpressionTokenizer token stream, but the running
+ value is a double and the dimension a packed long, so no Quantity,
+ substring or boxed number is created per token. Numbers are parsed
+ in place. Not thread-safe: reuse one instance per thread (see
+ forCurrentThread).
+ *******************************************************************/
+public final class QuantityEvaluator extends ExpressionReader {
+
+    private static final ThreadLocal<QuantityEvaluator> PER_THREAD =
+            ThreadLocal.withInitial(QuantityEvaluator::new);
+
+    // Exactly representable powers of ten, for the fast number path
+    private static final double[] POW10 = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+
+    // Dimension of the value last returned by a parse method
+    private long dim;
+
+    private double resultValue;
+    private long resultDim = UnitDimension.DIMENSIONLESS.bits();
+
+    // Own tokenizer: its arrays are reused from one evaluate to the next
+    public QuantityEvaluator() {
+        super(new ExpressionTokenizer());
+    }
+
+    public static QuantityEvaluator forCurrentThread() {
+        return PER_THREAD.get();
+    }
+
+    public double evaluate(CharSequence text) {
+        if (text == null) {
+            throw new ParseError(ParseError.Code.NULL_INPUT, -1);
+        }
+        input = tokens.tokenize(text).text();
+        tok = 0;
+        try {
+            double value = parseExpression();
+
+            if (kind() != ExpressionTokenizer.END) {
+                throw new ParseError(ParseError.Code.TRAILING_CHARACTERS, startOf());
+            }
+            resultValue = value;
+            resultDim = dim;
+            return value;
+        } finally {
+            input = null;
+        }
+    }
+
+    public double getValue() {
+        return resultValue;
+    }
+
+    // Interned, so repeated dimensions don't allocate either
+    public UnitDimension getDimension() {
+        return UnitDimension.ofBits(resultDim);
+    }
+
+    private double parseExpression() {
+        double result = parseTerm();
+        long d = dim;
+        while (true) {
+            int at = startOf();
+            if (match(ExpressionTokenizer.PLUS)) {
+                double rhs = parseTerm();
+                if (d != dim) {
+                    throw new ParseError(ParseError.Code.ADD_DIMENSION_MISMATCH, at);
+                }
+                result = result + rhs;
+            } else if (match(ExpressionTokenizer.MINUS)) {
+                double rhs = parseTerm();
+                if (d != dim) {
+                    throw new ParseError(ParseError.Code.SUBTRACT_DIMENSION_MISMATCH, at);
+                }
+                result = result - rhs;
+            } else {
+                break;
+            }
+        }
+        dim = d;
+        return result;
+    }
+
+    private double parseTerm() {
+        double result = parseFactor();
+        long d = dim;
+
+        while (true) {
+            // Operator, or the start of the right factor for implicit multiplication
+            int at = startOf();
+            if (match(ExpressionTokenizer.STAR)) {
+                double rhs = parseFactor();
+                result = result * rhs;
+                d = multiply(d, dim, at);
+            } else if (match(ExpressionTokenizer.SLASH)) {
+                double rhs = parseFactor();
+                result = result / rhs;
+                d = divide(d, dim, at);
+            } else if (isImplicitMulAhead()) {
+                double rhs = parseFactor();
+                result = result * rhs;
+                d = multiply(d, dim, at);
+            } else {
+                break;
+            }
+        }
+        dim = d;
+        return result;
+    }
+
+    private double parseFactor() {
+        boolean negate = readSigns();
+
+        double base = parsePrimary();
+
+        int caret = startOf();
+        if (match(ExpressionTokenizer.CARET)) {
+            int exp = readExponent(caret);
+            if (exp == 0) {
+                base = 1.0;
+                dim = UnitDimension.DIMENSIONLESS.bits();
+            } else {
+                dim = pow(dim, exp, caret);
+                base = Math.pow(base, exp);
+            }
+        }
+
+        if (negate) {
+            base = -base;
+        }
+        return base;
+    }
+
+    private double parsePrimary() {
+        int start = startOf();
+
+        switch (kind()) {
+            case ExpressionTokenizer.END -> throw new ParseError(ParseError.Code.UNEXPECTED_END, start);
+            case ExpressionTokenizer.LPAREN -> {
+                tok++;
+                double inside = parseExpression();
+                if (!match(ExpressionTokenizer.RPAREN)) {
+                    throw new ParseError(ParseError.Code.MISSING_CLOSING_PARENTHESIS, startOf());
+                }
+                return inside;
+            }
+            case ExpressionTokenizer.NUMBER -> {
+                double value = parseNumber(start, tokens.end(tok));
+                tok++;
+                long d = UnitDimension.DIMENSIONLESS.bits();
+
+                // Numbers & units together
+                while (kind() == ExpressionTokenizer.SYMBOL) {
+                    int at = startOf();
+                    d = multiply(d, parseSymbol(), at);
+                }
+                dim = d;
+                return value;
+            }
+            case ExpressionTokenizer.SYMBOL -> {
+                dim = parseSymbol();
+                return 1.0;
+            }
+            default -> throw new ParseError(ParseError.Code.UNEXPECTED_CHARACTER, start,
+                    String.valueOf(input.charAt(start)));
+        }
+    }
+
+    /***********************************************************************
+    Number token input[start, end): digits [. digits] [e|E [+|-] digits].
+    A mantissa of at most 2^53 (every number of up to 15 significant
+    digits) with a decimal exponent within +-22 is converted with one
+    multiply or divide (both operands are exact doubles, so the result is
+    correctly rounded like Double.parseDouble). Anything else, including
+    larger mantissas, falls back to Double.parseDouble.
+    ***********************************************************************/
+    private double parseNumber(int start, int end) {
+        int pos = start;
+        boolean hasDot = false;
+
+        long mantissa = 0;
+        int digits = 0;
+        int significant = 0;
+        int scale = 0;          // decimal exponent adjustment from the digits
+        boolean exact = true;
+
+        while (pos < end) {
+            char c = input.charAt(pos);
+            if (Character.isDigit(c)) {
+                pos++;
+                digits++;
+                int d = c - '0';
+                if (d > 9 || d < 0) {
+                    exact = false;          // non-ASCII digit, let the JDK decide
+                } else if (significant < 18) {
+                    if (mantissa != 0 || d != 0) {
+                        mantissa = mantissa * 10 + d;
+                        significant++;
+                    }
+                    if (hasDot) {
+                        scale--;
+                    }
+                } else {
+                    exact = false;
+                }
+            } else if (c == '.' && !hasDot) {
+                hasDot = true;
+                pos++;
+            } else {
+                break;
+            }
+        }
+
+        int exponent = 0;
+        if (pos < end) {
+            char c = input.charAt(pos);
+            if (c == 'e' || c == 'E') {
+                pos++;
+                boolean negative = false;
+                if (pos < end) {
+                    char sign = input.charAt(pos);
+                    if (sign == '+' || sign == '-') {
+                        negative = sign == '-';
+                        pos++;
+                    }
+                }
+                int digitsStart = pos;
+                while (pos < end && Character.isDigit(input.charAt(pos))) {
+                    if (exponent < 10_000) {
+                        exponent = exponent * 10 + (input.charAt(pos) - '0');
+                    }
+                    pos++;
+                }
+                if (pos == digitsStart) {
+                    exact = false;          // "1e": Double.parseDouble reports it
+                }
+                if (negative) {
+                    exponent = -exponent;
+                }
+            }
+        }
+
+        if (end - start == 1 && input.charAt(start) == '.') {
+            throw new ParseError(ParseError.Code.INVALID_NUMBER, start);
+        }
+
+        if (exact && digits > 0) {
+            int exp10 = scale + exponent;
+            if (mantissa == 0) {
+                return 0.0;
+            }
+            if (mantissa <= MAX_EXACT_MANTISSA && exp10 >= -22 && exp10 <= 22) {
+                return exp10 >= 0 ? mantissa * POW10[exp10] : mantissa / POW10[-exp10];
+            }
+        }
+        try {
+            return Double.parseDouble(input.substring(start, end));
+        } catch (NumberFormatException e) {
+            throw new ParseError(ParseError.Code.INVALID_NUMBER, start);
+        }
+    }
+
+    // Packed dimension of the symbol token
+    private long parseSymbol() {
+        int start = startOf();
+        int end = tokens.end(tok);
+        tok++;
+        UnitDimension found = UnitRegistry.findSymbol(input, start, end);
+        if (found == null) {
+            throw new ParseError(ParseError.Code.UNKNOWN_SYMBOL, start, input.substring(start, end));
+        }
+        return found.bits();
+    }
+}
@@ -1,41 +1,96 @@
 package org.example.unitcalculator_2;
 
+import java.util.function.Function;
+
 /*********************************************************
  * Parser for a formula with numbers and units
+ * (reads the token array of ExpressionTokenizer)
  ********************************************************/
-public final class QuantityExpressionParser {
+public final class QuantityExpressionParser extends ExpressionReader {
 
-    private final String input;
-    private int pos;
+    private final Function<String, UnitDimension> resolver;
 
-    private QuantityExpressionParser(String input) {
-        this.input = input;
-        this.pos = 0;
+    private QuantityExpressionParser(ExpressionTokenizer tokens, Function<String, UnitDimension> resolver) {
+        super(tokens);
+        this.resolver = resolver;
     }
 
     public static Quantity parse(String input) {
         if (input == null) {
-            throw new IllegalArgumentException("Input is null");
+            throw new ParseError(ParseError.Code.NULL_INPUT, -1);
+        }
+        return parse(ExpressionTokenizer.forCurrentThread().tokenize(input));
+    }
+
+    // Tokens lexed by the caller, e.g. kept up to date with relex while typing
+    public static Quantity parse(ExpressionTokenizer tokens) {
+        if (!CalculatorMetrics.ENABLED) {
+            return parse(tokens, UnitRegistry::findSymbol);
+        }
+        long start = System.nanoTime();
+        boolean success = false;
+        try {
+            Quantity q = parse(tokens, UnitRegistry::findSymbol);
+            success = true;
+            return q;
+        } finally {
+            CalculatorMetrics.recordParse(start, success);
         }
-        QuantityExpressionParser p = new QuantityExpressionParser(input);
+    }
+
+    // Resolve symbols somewhere other than the live registry (e.g. units not published yet).
+    // The resolver returns null for unknown symbols.
+    static Quantity parse(String input, Function<String, UnitDimension> resolver) {
+        if (input == null) {
+            throw new ParseError(ParseError.Code.NULL_INPUT, -1);
+        }
+        return parse(ExpressionTokenizer.forCurrentThread().tokenize(input), resolver);
+    }
+
+    private static Quantity parse(ExpressionTokenizer tokens, Function<String, UnitDimension> resolver) {
+        QuantityExpressionParser p = new QuantityExpressionParser(tokens, resolver);
         Quantity result = p.parseExpression();
-        p.skipSpaces();
 
-        if (!p.isEnd()) {
-            throw new IllegalArgumentException("Unexpected trailing characters at position " + p.pos);
+        if (p.kind() != ExpressionTokenizer.END) {
+            throw new ParseError(ParseError.Code.TRAILING_CHARACTERS, p.startOf());
         }
         return result;
     }
 
+    /***********************************************************************
+    Same as parse, but invalid input comes back as a value instead of an
+    exception reaching the caller. Errors are stackless and format their
+    message lazily, so a rejected formula is about as cheap as a good one.
+    ***********************************************************************/
+    public static ParseResult tryParse(String input) {
+        try {
+            return ParseResult.success(parse(input));
+        } catch (ParseError e) {
+            return ParseResult.failure(e);
+        }
+    }
+
+    // Resolve and evaluate once; the returned program can be re-run without lexing
+    public static CompiledExpression compile(String input) {
+        int version = UnitRegistry.version();
+        return new CompiledExpression(input, parse(input), version);
+    }
+
     private Quantity parseExpression() {
         Quantity result = parseTerm();
         while (true) {
-            skipSpaces();
-            if (match('+')) {
+            int at = startOf();
+            if (match(ExpressionTokenizer.PLUS)) {
                 Quantity rhs = parseTerm();
+                if (!result.getDimension().equals(rhs.getDimension())) {
+                    throw new ParseError(ParseError.Code.ADD_DIMENSION_MISMATCH, at);
+                }
                 result = result.add(rhs);
-            } else if (match('-')) {
+            } else if (match(ExpressionTokenizer.MINUS)) {
                 Quantity rhs = parseTerm();
+                if (!result.getDimension().equals(rhs.getDimension())) {
+                    throw new ParseError(ParseError.Code.SUBTRACT_DIMENSION_MISMATCH, at);
+                }
                 result = result.subtract(rhs);
             } else {
                 break;
@@ -48,17 +103,17 @@ public final class QuantityExpressionParser {
         Quantity result = parseFactor();
 
         while (true) {
-            skipSpaces();
-
-            if (match('*')) {
+            // Operator, or the start of the right factor for implicit multiplication
+            int at = startOf();
+            if (match(ExpressionTokenizer.STAR)) {
                 Quantity rhs = parseFactor();
-                result = result.multiply(rhs);
-            } else if (match('/')) {
+                result = multiply(result, rhs, at);
+            } else if (match(ExpressionTokenizer.SLASH)) {
                 Quantity rhs = parseFactor();
-                result = result.divide(rhs);
+                result = divide(result, rhs, at);
             } else if (isImplicitMulAhead()) {
                 Quantity rhs = parseFactor();
-                result = result.multiply(rhs);
+                result = multiply(result, rhs, at);
             } else {
                 break;
             }
@@ -68,24 +123,14 @@ public final class QuantityExpressionParser {
 
     // Factor = unary
     private Quantity parseFactor() {
-        skipSpaces();
-        boolean negate = false;
-        while (true) {
-            if (match('+')) {
-                    //ignore
-            } else if (match('-')) {
-                negate = !negate;
-            } else {
-                break;
-            }
-        }
+        boolean negate = readSigns();
 
         Quantity base = parsePrimary();
 
-        skipSpaces();
-        if (match('^')) {
-            int exp = parseSignedInt();
-            base = base.pow(exp);
+        int caret = startOf();
+        if (match(ExpressionTokenizer.CARET)) {
+            int exp = readExponent(caret);
+            base = pow(base, exp, caret);
         }
 
         if (negate) {
@@ -95,184 +140,67 @@ public final class QuantityExpressionParser {
     }
 
     private Quantity parsePrimary() {
-        skipSpaces();
-        if (isEnd()) {
-            throw new IllegalArgumentException("Unexpected end of input");
-        }
-
-        char c = peek();
-        if (c == '(') {
-            consume();
-            Quantity inside = parseExpression();
-            skipSpaces();
-            if (!match(')')) {
-                throw new IllegalArgumentException("Missing closing parenthesis");
+        int start = startOf();
+
+        switch (kind()) {
+            case ExpressionTokenizer.END -> throw new ParseError(ParseError.Code.UNEXPECTED_END, start);
+            case ExpressionTokenizer.LPAREN -> {
+                tok++;
+                Quantity inside = parseExpression();
+                if (!match(ExpressionTokenizer.RPAREN)) {
+                    throw new ParseError(ParseError.Code.MISSING_CLOSING_PARENTHESIS, startOf());
+                }
+                return inside;
             }
-            return inside;
-        }
-
-        if (Character.isDigit(c) || c == '.') {
-            double value = parseNumber();
-            // Only numbers -> no dimension
-            Quantity q = new Quantity(value, UnitDimension.DIMENSIONLESS);
-
-            // Numbers & units together
-            while (true) {
-                skipSpaces();
-                if (isSymbolStart(peek())) {
-                    String sym = parseSymbol();
-                    UnitDimension dim = UnitRegistry.resolveSymbol(sym);
+            case ExpressionTokenizer.NUMBER -> {
+                double value = parseNumber();
+                // Only numbers -> no dimension
+                Quantity q = new Quantity(value, UnitDimension.DIMENSIONLESS);
+
+                // Numbers & units together
+                while (kind() == ExpressionTokenizer.SYMBOL) {
+                    int at = startOf();
+                    UnitDimension dim = resolveSymbol();
                     Quantity unitQ = new Quantity(1.0, dim);
-                    q = q.multiply(unitQ);
-                } else {
-                    break;
+                    q = multiply(q, unitQ, at);
                 }
+                return q;
             }
-            return q;
-        }
-
-        if (isSymbolStart(c)) {
-            String sym = parseSymbol();
-            UnitDimension dim = UnitRegistry.resolveSymbol(sym);
+            case ExpressionTokenizer.SYMBOL -> {
+                UnitDimension dim = resolveSymbol();
 
-            return new Quantity(1.0, dim);
+                return new Quantity(1.0, dim);
+            }
+            default -> throw new ParseError(ParseError.Code.UNEXPECTED_CHARACTER, start,
+                    String.valueOf(input.charAt(start)));
         }
-
-        throw new IllegalArgumentException("Unexpected character: '" + c + "' at position " + pos);
     }
 
 
-    // Parse numbers exponents symbols
+    // Number token: digits [. digits] [e|E [+|-] digits]
     private double parseNumber() {
-        skipSpaces();
-        int start = pos;
-        boolean hasDot = false;
-
-        while (!isEnd()) {
-            char c = peek();
-            if (Character.isDigit(c)) {
-                consume();
-            } else if (c == '.' && !hasDot) {
-                hasDot = true;
-                consume();
-            } else {
-                break;
-            }
-        }
-
-        if (!isEnd()) {
-            char c = peek();
-            if (c == 'e' || c == 'E') {
-                consume();
-                if (!isEnd()) {
-                    char sign = peek();
-                    if (sign == '+' || sign == '-') {
-                        consume();
-                    }
-                }
-                while (!isEnd() && Character.isDigit(peek())) {
-                    consume();
-                }
-            }
-        }
-
-        String s = input.substring(start, pos);
+        int start = startOf();
+        String s = input.substring(start, tokens.end(tok));
+        tok++;
 
         if (s.isEmpty() || s.equals(".") || s.equals("+") || s.equals("-")) {
-            throw new IllegalArgumentException("Invalid number at position " + start);
+            throw new ParseError(ParseError.Code.INVALID_NUMBER, start);
         }
-        return Double.parseDouble(s);
-    }
-
-    private int parseSignedInt() {
-        skipSpaces();
-
-        int start = pos;
-        boolean negative = false;
-
-        if (match('-')) {
-            negative = true;
-        } else if (match('+')) {
-            // positive index
-        }
-
-        if (isEnd() || !Character.isDigit(peek())) {
-            throw new IllegalArgumentException("Invalid exponent at position " + start);
+        try {
+            return Double.parseDouble(s);
+        } catch (NumberFormatException e) {
+            throw new ParseError(ParseError.Code.INVALID_NUMBER, start);
         }
-
-        int value = 0;
-        while (!isEnd() && Character.isDigit(peek())) {
-            int d = peek() - '0';
-
-            consume();
-            value = value * 10 + d;
-        }
-
-        return negative ? -value : value;
     }
 
-    private String parseSymbol() {
-        skipSpaces();
-
-        int start = pos;
-
-        while (!isEnd() && isSymbolPart(peek())) {
-            consume();
-        }
-        if (start == pos) {
-            throw new IllegalArgumentException("Expected unit symbol at position " + start);
+    private UnitDimension resolveSymbol() {
+        int start = startOf();
+        String sym = input.substring(start, tokens.end(tok));
+        tok++;
+        UnitDimension dim = resolver.apply(sym);
+        if (dim == null) {
+            throw new ParseError(ParseError.Code.UNKNOWN_SYMBOL, start, sym);
         }
-        return input.substring(start, pos);
-    }
-
-
-    private boolean isImplicitMulAhead() {
-        skipSpaces();
-        if (isEnd()) {
-            return false;
-        }
-        char c = peek();
-
-        return c == '(' || Character.isDigit(c) || c == '.' || isSymbolStart(c);
-    }
-
-    private boolean isSymbolStart(char c) {
-        if (c == 0) {
-            return false;
-        }
-        return Character.isLetter(c) || c == 'μ' || c == 'Ω' || c == 'Φ';
-    }
-
-    private boolean isSymbolPart(char c) {
-        return isSymbolStart(c);
-    }
-
-    private void skipSpaces() {
-        while (!isEnd() && Character.isWhitespace(peek())) {
-            consume();
-        }
-    }
-
-    private boolean match(char expected) {
-        if (!isEnd() && peek() == expected) {
-            consume();
-            return true;
-        }
-        return false;
-    }
-
-    private char peek() {
-        if (isEnd()) {
-            return 0;
-        }
-        return input.charAt(pos);
-    }
-
-    private void consume() {
-        pos++;
-    }
-
-    private boolean isEnd() {
-        return pos >= input.length();
+        return dim;
     }
 }
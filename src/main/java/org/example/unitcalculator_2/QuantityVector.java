@@ -0,0 +1,171 @@
+package org.example.unitcalculator_2;
+
+import java.util.Arrays;
+
+/*****************************************************************
+ Column of values that all share one UnitDimension
+
+ The dimension is checked once per operation instead of once per
+ element, and the loops are plain counted loops over double[]
+ so the JIT can vectorize them.
+ *******************************************************************/
+public final class QuantityVector {
+
+    private final double[] values;
+    private final UnitDimension dimension;
+
+    // Takes ownership of the array; only used for freshly computed results
+    private QuantityVector(double[] values, UnitDimension dimension) {
+        this.values = values;
+        this.dimension = dimension;
+    }
+
+    public static QuantityVector of(UnitDimension dimension, double... values) {
+        return new QuantityVector(values.clone(), dimension);
+    }
+
+    public int size() {
+        return values.length;
+    }
+
+    public UnitDimension getDimension() {
+        return dimension;
+    }
+
+    public double getValue(int index) {
+        return values[index];
+    }
+
+    public Quantity get(int index) {
+        return new Quantity(values[index], dimension);
+    }
+
+    public double[] toArray() {
+        return values.clone();
+    }
+
+    //**************************************************************************
+    // Element-wise
+    //**************************************************************************
+    public QuantityVector add(QuantityVector other) {
+        requireSameSize(other);
+        if (!dimension.equals(other.dimension)) {
+            throw new IllegalArgumentException("Cannot add quantities in different dimensions");
+        }
+        double[] a = values, b = other.values, r = new double[a.length];
+        for (int i = 0; i < r.length; i++) {
+            r[i] = a[i] + b[i];
+        }
+        return new QuantityVector(r, dimension);
+    }
+
+    public QuantityVector subtract(QuantityVector other) {
+        requireSameSize(other);
+        if (!dimension.equals(other.dimension)) {
+            throw new IllegalArgumentException("Cannot subtract quantities in different dimensions");
+        }
+        double[] a = values, b = other.values, r = new double[a.length];
+        for (int i = 0; i < r.length; i++) {
+            r[i] = a[i] - b[i];
+        }
+        return new QuantityVector(r, dimension);
+    }
+
+    public QuantityVector multiply(QuantityVector other) {
+        requireSameSize(other);
+        double[] a = values, b = other.values, r = new double[a.length];
+        for (int i = 0; i < r.length; i++) {
+            r[i] = a[i] * b[i];
+        }
+        return new QuantityVector(r, dimension.multiply(other.dimension));
+    }
+
+    public QuantityVector divide(QuantityVector other) {
+        requireSameSize(other);
+        double[] a = values, b = other.values, r = new double[a.length];
+        for (int i = 0; i < r.length; i++) {
+            r[i] = a[i] / b[i];
+        }
+        return new QuantityVector(r, dimension.divide(other.dimension));
+    }
+
+    //**************************************************************************
+    // With a single quantity
+    //**************************************************************************
+    public QuantityVector add(Quantity q) {
+        if (!dimension.equals(q.getDimension())) {
+            throw new IllegalArgumentException("Cannot add quantities in different dimensions");
+        }
+        double s = q.getValue();
+        double[] a = values, r = new double[a.length];
+        for (int i = 0; i < r.length; i++) {
+            r[i] = a[i] + s;
+        }
+        return new QuantityVector(r, dimension);
+    }
+
+    public QuantityVector subtract(Quantity q) {
+        if (!dimension.equals(q.getDimension())) {
+            throw new IllegalArgumentException("Cannot subtract quantities in different dimensions");
+        }
+        double s = q.getValue();
+        double[] a = values, r = new double[a.length];
+        for (int i = 0; i < r.length; i++) {
+            r[i] = a[i] - s;
+        }
+        return new QuantityVector(r, dimension);
+    }
+
+    public QuantityVector multiply(Quantity q) {
+        double s = q.getValue();
+        double[] a = values, r = new double[a.length];
+        for (int i = 0; i < r.length; i++) {
+            r[i] = a[i] * s;
+        }
+        return new QuantityVector(r, dimension.multiply(q.getDimension()));
+    }
+
+    public QuantityVector divide(Quantity q) {
+        double s = q.getValue();
+        double[] a = values, r = new double[a.length];
+        for (int i = 0; i < r.length; i++) {
+            r[i] = a[i] / s;
+        }
+        return new QuantityVector(r, dimension.divide(q.getDimension()));
+    }
+
+    // Same rules as Quantity.pow, applied to every element
+    public QuantityVector pow(int exponent) {
+        double[] r = new double[values.length];
+        if (exponent == 0) {
+            Arrays.fill(r, 1.0);
+            return new QuantityVector(r, UnitDimension.DIMENSIONLESS);
+        }
+        UnitDimension newDim = dimension.pow(exponent);
+        double[] a = values;
+        for (int i = 0; i < r.length; i++) {
+            r[i] = Math.pow(a[i], exponent);
+        }
+        return new QuantityVector(r, newDim);
+    }
+
+    public QuantityVector negate() {
+        double[] a = values, r = new double[a.length];
+        for (int i = 0; i < r.length; i++) {
+            r[i] = -a[i];
+        }
+        return new QuantityVector(r, dimension);
+    }
+
+    private void requireSameSize(QuantityVector other) {
+        if (values.length != other.values.length) {
+            throw new IllegalArgumentException(
+                    "Vector sizes differ: " + values.length + " and " + other.values.length);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return values.length + " values " + dimension;
+    }
+}
@@ -39,6 +39,12 @@ public class UnitCalculatorApp extends Application {
         stage.show();
     }
 
+    // Write custom units still queued before the JVM exits
+    @Override
+    public void stop() {
+        CustomUnitStorage.close();
+    }
+
     public static void main(String[] args) {
         launch();
     }
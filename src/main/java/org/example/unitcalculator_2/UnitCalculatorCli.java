@@ -0,0 +1,167 @@
+package org.example.unitcalculator_2;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/*****************************************************************
+ Headless command line evaluator (no JavaFX needed)
+
+ Reads one expression per line from a file or stdin and writes
+ expression, value, base SI form and derived (or compound) symbol,
+ tab separated.
+ Only one window of lines is held in memory at a time.
+
+ Usage: UnitCalculatorCli [--flush-every N] [--parallel N] [--window N] [file|-]
+ *******************************************************************/
+public final class UnitCalculatorCli {
+
+    private static final int DEFAULT_FLUSH_EVERY = 1000;
+    private static final int DEFAULT_WINDOW = 4096;
+
+    private final int flushEvery;
+    private final int parallelism;
+    private final int window;
+
+    private long linesSinceFlush;
+
+    // Reused for every value so formatting doesn't create a String per line
+    private final StringBuilder number = new StringBuilder(32);
+    private char[] numberChars = new char[32];
+
+    UnitCalculatorCli(int flushEvery, int parallelism, int window) {
+        this.flushEvery = flushEvery;
+        this.parallelism = parallelism;
+        this.window = window;
+    }
+
+    public static void main(String[] args) {
+        int flushEvery = DEFAULT_FLUSH_EVERY;
+        int parallelism = 1;
+        int window = DEFAULT_WINDOW;
+        String file = null;
+
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--flush-every" -> flushEvery = Integer.parseInt(args[++i]);
+                    case "--parallel" -> parallelism = Integer.parseInt(args[++i]);
+                    case "--window" -> window = Integer.parseInt(args[++i]);
+                    default -> {
+                        if (file != null || args[i].startsWith("--")) {
+                            throw new IllegalArgumentException("Unknown argument: " + args[i]);
+                        }
+                        file = args[i];
+                    }
+                }
+            }
+            if (parallelism <= 0 || window <= 0) {
+                throw new IllegalArgumentException("--parallel and --window must be positive");
+            }
+            if (flushEvery < 0) {
+                throw new IllegalArgumentException("--flush-every must be non-negative");
+            }
+        } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException ex) {
+            System.err.println("Usage: UnitCalculatorCli [--flush-every N] [--parallel N] [--window N] [file|-]");
+            System.exit(2);
+            return;
+        }
+
+        UnitCalculatorCli cli = new UnitCalculatorCli(flushEvery, parallelism, window);
+
+        try (BufferedReader in = (file == null || file.equals("-"))
+                ? new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8))
+                : Files.newBufferedReader(Paths.get(file), StandardCharsets.UTF_8);
+             Writer out = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8), 1 << 16)) {
+            cli.run(in, out);
+        } catch (IOException e) {
+            System.err.println("Error: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    void run(BufferedReader in, Writer out) throws IOException {
+        if (parallelism == 1) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                writeResult(out, BatchEvaluator.evaluate(0, line));
+            }
+        } else {
+            // Evaluate window by window; results of a window come back in input order
+            try (BatchEvaluator evaluator = new BatchEvaluator(parallelism)) {
+                List<String> pending = new ArrayList<>(window);
+                String line;
+                while ((line = in.readLine()) != null) {
+                    if (line.isBlank()) {
+                        continue;
+                    }
+                    pending.add(line);
+                    if (pending.size() == window) {
+                        writeAll(out, evaluator.evaluateAll(pending));
+                        pending.clear();
+                    }
+                }
+                writeAll(out, evaluator.evaluateAll(pending));
+            }
+        }
+        out.flush();
+    }
+
+    private void writeAll(Writer out, List<BatchEvaluator.Result> results) throws IOException {
+        for (BatchEvaluator.Result r : results) {
+            writeResult(out, r);
+        }
+    }
+
+    private void writeResult(Writer out, BatchEvaluator.Result r) throws IOException {
+        out.write(r.expression());
+        out.write('\t');
+
+        if (r.isSuccess()) {
+            UnitDimension dim = r.quantity().getDimension();
+            String derived = UnitRegistry.getDerivedSymbol(dim);
+            if (derived == null) {
+                derived = UnitRegistry.getCompoundSymbol(dim);
+            }
+
+            writeValue(out, r.quantity().getValue());
+            out.write('\t');
+            out.write(dim.toBaseString());
+            out.write('\t');
+            out.write(derived != null ? derived : "-");
+        } else {
+            out.write("ERROR\t");
+            out.write(String.valueOf(r.error()));
+        }
+        out.write('\n');
+
+        // 0 = only flush when the input ends
+        if (flushEvery > 0 && ++linesSinceFlush >= flushEvery) {
+            out.flush();
+            linesSinceFlush = 0;
+        }
+    }
+
+    private void writeValue(Writer out, double value) throws IOException {
+        number.setLength(0);
+        ValueFormatter.appendTo(number, value);
+
+        int len = number.length();
+        if (len > numberChars.length) {
+            numberChars = new char[len];
+        }
+        number.getChars(0, len, numberChars, 0);
+        out.write(numberChars, 0, len);
+    }
+}
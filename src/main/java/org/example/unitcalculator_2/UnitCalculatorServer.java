@@ -0,0 +1,379 @@
+package org.example.unitcalculator_2;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/*****************************************************************
+ Headless HTTP evaluator (no JavaFX needed)
+
+   GET  /evaluate?expr=...   one expression (POST: expression as body)
+   POST /batch               one expression per line, results in order
+   GET  /convert?value=V&from=A&to=B   V in unit A converted to B
+   POST /convert?to=B        "value unit" per line, all converted to B
+
+ Every evaluation result is a JSON object: expression, value, base,
+ derived (null if none), or expression and error. Each request runs on its
+ own virtual thread. With --custom-units the saved custom units are
+ loaded and reloaded whenever custom-units.txt changes.
+
+ Usage: UnitCalculatorServer [--host H] [--port N] [--custom-units]
+ *******************************************************************/
+public final class UnitCalculatorServer {
+
+    private static final String DEFAULT_HOST = "127.0.0.1";
+    private static final int DEFAULT_PORT = 8080;
+
+    // Larger request bodies are refused with 413
+    private static final int MAX_BODY_BYTES = 4 << 20;
+
+    private UnitCalculatorServer() { }
+
+    public static void main(String[] args) {
+        String host = DEFAULT_HOST;
+        int port = DEFAULT_PORT;
+        boolean customUnits = false;
+
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--host" -> host = args[++i];
+                    case "--port" -> port = Integer.parseInt(args[++i]);
+                    case "--custom-units" -> customUnits = true;
+                    default -> throw new IllegalArgumentException("Unknown argument: " + args[i]);
+                }
+            }
+            if (port < 0 || port > 65535) {
+                throw new IllegalArgumentException("Port out of range");
+            }
+        } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException ex) {
+            System.err.println("Usage: UnitCalculatorServer [--host H] [--port N] [--custom-units]");
+            System.exit(2);
+            return;
+        }
+
+        try {
+            if (customUnits) {
+                CustomUnitWatcher.start(update -> {
+                    for (String error : update.loaded().errors()) {
+                        System.err.println("Custom unit not loaded: " + error);
+                    }
+                });
+            }
+            HttpServer server = start(new InetSocketAddress(host, port));
+            System.out.println("Listening on http://" + host + ":" + server.getAddress().getPort());
+        } catch (IOException e) {
+            System.err.println("Error: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    // Bind and start serving; port 0 picks a free port. Stop with server.stop(0).
+    public static HttpServer start(InetSocketAddress address) throws IOException {
+        // Small responses otherwise wait ~40 ms for Nagle / delayed ACK; read once when the JDK server loads
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+        HttpServer server = HttpServer.create(address, 0);
+        ExecutorService perRequest = Executors.newVirtualThreadPerTaskExecutor();
+        server.setExecutor(perRequest);
+        server.createContext("/evaluate", UnitCalculatorServer::handleEvaluate);
+        server.createContext("/batch", UnitCalculatorServer::handleBatch);
+        server.createContext("/convert", UnitCalculatorServer::handleConvert);
+        server.start();
+        return server;
+    }
+
+    //**************************************************************************
+    // Handlers
+    //**************************************************************************
+    private static void handleEvaluate(HttpExchange ex) throws IOException {
+        try (ex) {
+            String expression;
+            switch (ex.getRequestMethod()) {
+                case "GET" -> {
+                    try {
+                        expression = queryParam(ex.getRequestURI().getRawQuery(), "expr");
+                    } catch (IllegalArgumentException e) {
+                        sendError(ex, 400, "Malformed query: " + e.getMessage());
+                        return;
+                    }
+                }
+                case "POST" -> {
+                    byte[] body = readBody(ex);
+                    if (body == null) {
+                        return;
+                    }
+                    expression = new String(body, StandardCharsets.UTF_8).strip();
+                }
+                default -> {
+                    sendError(ex, 405, "Use GET or POST");
+                    return;
+                }
+            }
+            if (expression == null) {
+                sendError(ex, 400, "Missing expr parameter");
+                return;
+            }
+
+            BatchEvaluator.Result r = BatchEvaluator.evaluate(0, expression);
+            StringBuilder json = new StringBuilder(128);
+            appendResult(json, r);
+            send(ex, r.isSuccess() ? 200 : 422, json);
+        }
+    }
+
+    private static void handleBatch(HttpExchange ex) throws IOException {
+        try (ex) {
+            if (!ex.getRequestMethod().equals("POST")) {
+                sendError(ex, 405, "Use POST");
+                return;
+            }
+            byte[] body = readBody(ex);
+            if (body == null) {
+                return;
+            }
+
+            String text = new String(body, StandardCharsets.UTF_8);
+            StringBuilder json = new StringBuilder(Math.max(64, text.length() * 4));
+            json.append('[');
+            int index = 0;
+            for (String line : text.split("\r?\n")) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                if (index > 0) {
+                    json.append(',');
+                }
+                appendResult(json, BatchEvaluator.evaluate(index++, line));
+            }
+            json.append(']');
+            send(ex, 200, json);
+        }
+    }
+
+    private static void handleConvert(HttpExchange ex) throws IOException {
+        try (ex) {
+            String query = ex.getRequestURI().getRawQuery();
+            String to;
+            String value;
+            String from;
+            try {
+                to = queryParam(query, "to");
+                value = queryParam(query, "value");
+                from = queryParam(query, "from");
+            } catch (IllegalArgumentException e) {
+                sendError(ex, 400, "Malformed query: " + e.getMessage());
+                return;
+            }
+            if (to == null) {
+                sendError(ex, 400, "Missing to parameter");
+                return;
+            }
+            switch (ex.getRequestMethod()) {
+                case "GET" -> convertOne(ex, value, from, to);
+                case "POST" -> {
+                    byte[] body = readBody(ex);
+                    if (body != null) {
+                        convertLines(ex, new String(body, StandardCharsets.UTF_8), to);
+                    }
+                }
+                default -> sendError(ex, 405, "Use GET or POST");
+            }
+        }
+    }
+
+    private static void convertOne(HttpExchange ex, String value, String from, String to) throws IOException {
+        if (value == null || from == null) {
+            sendError(ex, 400, "Missing value or from parameter");
+            return;
+        }
+        double v;
+        try {
+            v = Double.parseDouble(value.strip());
+        } catch (NumberFormatException e) {
+            sendError(ex, 400, "Invalid value: " + value);
+            return;
+        }
+        double factor;
+        try {
+            factor = UnitConverter.factor(from, to);
+        } catch (IllegalArgumentException e) {
+            // ParseError, or anything else the input provokes: answer instead of dropping the connection
+            sendError(ex, 422, e.getMessage());
+            return;
+        }
+        StringBuilder json = new StringBuilder(128);
+        json.append("{\"value\":");
+        appendNumber(json, v);
+        json.append(",\"from\":");
+        appendString(json, from);
+        json.append(",\"to\":");
+        appendString(json, to);
+        json.append(",\"factor\":");
+        appendNumber(json, factor);
+        json.append(",\"result\":");
+        appendNumber(json, v * factor);
+        json.append('}');
+        send(ex, 200, json);
+    }
+
+    // One "value unit" per line; all rows go through one bulk conversion
+    private static void convertLines(HttpExchange ex, String text, String to) throws IOException {
+        String[] lines = text.split("\r?\n");
+        double[] values = new double[lines.length];
+        String[] units = new String[lines.length];
+        int n = 0;
+        for (int i = 0; i < lines.length; i++) {
+            String line = lines[i].strip();
+            if (line.isEmpty()) {
+                continue;
+            }
+            int space = 0;
+            while (space < line.length() && !Character.isWhitespace(line.charAt(space))) {
+                space++;
+            }
+            try {
+                values[n] = Double.parseDouble(line.substring(0, space));
+            } catch (NumberFormatException e) {
+                sendError(ex, 400, "Line " + (i + 1) + ": invalid value");
+                return;
+            }
+            units[n++] = line.substring(space).strip();
+        }
+
+        double[] results = new double[n];
+        try {
+            UnitConverter.convertAll(Arrays.copyOf(values, n), Arrays.copyOf(units, n), to, results);
+        } catch (IllegalArgumentException e) {
+            sendError(ex, 422, e.getMessage());
+            return;
+        }
+        StringBuilder json = new StringBuilder(32 + n * 24);
+        json.append("{\"to\":");
+        appendString(json, to);
+        json.append(",\"results\":[");
+        for (int i = 0; i < n; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            appendNumber(json, results[i]);
+        }
+        json.append("]}");
+        send(ex, 200, json);
+    }
+
+    //**************************************************************************
+    // JSON
+    //**************************************************************************
+    private static void appendResult(StringBuilder json, BatchEvaluator.Result r) {
+        json.append("{\"expression\":");
+        appendString(json, r.expression());
+
+        if (r.isSuccess()) {
+            Quantity q = r.quantity();
+            UnitDimension dim = q.getDimension();
+
+            json.append(",\"value\":");
+            appendNumber(json, q.getValue());
+            json.append(",\"base\":");
+            appendString(json, dim.toBaseString());
+            json.append(",\"derived\":");
+            appendString(json, UnitRegistry.getDerivedSymbol(dim));
+        } else {
+            json.append(",\"error\":");
+            appendString(json, r.error());
+        }
+        json.append('}');
+    }
+
+    private static void appendNumber(StringBuilder json, double v) {
+        if (Double.isNaN(v) || Double.isInfinite(v)) {
+            appendString(json, Double.toString(v));   // not a JSON number
+        } else {
+            json.append(v);
+        }
+    }
+
+    private static void appendString(StringBuilder json, String s) {
+        if (s == null) {
+            json.append("null");
+            return;
+        }
+        json.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"' -> json.append("\\\"");
+                case '\\' -> json.append("\\\\");
+                case '\n' -> json.append("\\n");
+                case '\r' -> json.append("\\r");
+                case '\t' -> json.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        json.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        json.append(c);
+                    }
+                }
+            }
+        }
+        json.append('"');
+    }
+
+    //**************************************************************************
+    // HTTP helpers
+    //**************************************************************************
+
+    // Request body, or null after answering 413 when it is too large
+    private static byte[] readBody(HttpExchange ex) throws IOException {
+        try (InputStream in = ex.getRequestBody()) {
+            byte[] body = in.readNBytes(MAX_BODY_BYTES + 1);
+            if (body.length > MAX_BODY_BYTES) {
+                sendError(ex, 413, "Request body too large");
+                return null;
+            }
+            return body;
+        }
+    }
+
+    // Decoded value of name, "" without '=', null if absent; a bad % escape throws IllegalArgumentException
+    private static String queryParam(String rawQuery, String name) {
+        if (rawQuery == null) {
+            return null;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int eq = pair.indexOf('=');
+            String key = eq < 0 ? pair : pair.substring(0, eq);
+            if (key.equals(name)) {
+                return eq < 0 ? "" : URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8);
+            }
+        }
+        return null;
+    }
+
+    private static void sendError(HttpExchange ex, int status, String message) throws IOException {
+        StringBuilder json = new StringBuilder("{\"error\":");
+        appendString(json, message);
+        json.append('}');
+        send(ex, status, json);
+    }
+
+    private static void send(HttpExchange ex, int status, CharSequence json) throws IOException {
+        byte[] bytes = json.toString().getBytes(StandardCharsets.UTF_8);
+        ex.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        ex.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = ex.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package org.example.unitcalculator_2;
+
+/*****************************************************************
+ Converts values between units of the same dimension
+
+ A unit is a registered symbol, a prefixed form of one (km, mA),
+ a unit from NonSiUnits (in, h, eV, bar, ...) or an expression of
+ those such as km/h or kg*m/s^2. Named units are looked up in the
+ ConversionTable of the current registry version, so converting is
+ one matrix lookup and a multiply; the table is rebuilt on the
+ first call after the registry changed (custom units).
+
+ Unknown units and mismatched dimensions throw ParseError.
+ *******************************************************************/
+public final class UnitConverter {
+
+    private static volatile ConversionTable table;
+
+    private UnitConverter() { }
+
+    // Factor taking a value in from to a value in to
+    public static double factor(String from, String to) {
+        if (from == null || to == null) {
+            throw new ParseError(ParseError.Code.NULL_INPUT, -1);
+        }
+        ConversionTable t = table();
+        return factor(t, from, t.find(from), to, t.find(to));
+    }
+
+    public static double convert(double value, String from, String to) {
+        return value * factor(from, to);
+    }
+
+    /***********************************************************************
+    out[i] = values[i] converted from units[i] to to (out may be values).
+    The target is resolved once; a row with the same unit as the row
+    before reuses its factor, any other named unit is one matrix lookup.
+    ***********************************************************************/
+    public static void convertAll(double[] values, String[] units, String to, double[] out) {
+        if (units.length != values.length || out.length < values.length) {
+            throw new IllegalArgumentException("Array lengths do not match");
+        }
+        if (to == null) {
+            throw new ParseError(ParseError.Code.NULL_INPUT, -1);
+        }
+        ConversionTable t = table();
+        int target = t.find(to);
+
+        String last = null;
+        double f = 0;
+        for (int i = 0; i < values.length; i++) {
+            String unit = units[i];
+            if (unit == null) {
+                throw new ParseError(ParseError.Code.NULL_INPUT, -1);
+            }
+            if (!unit.equals(last)) {
+                f = factor(t, unit, t.find(unit), to, target);
+                last = unit;
+            }
+            out[i] = values[i] * f;
+        }
+    }
+
+    // Table for the current registry version
+    static ConversionTable table() {
+        int version = UnitRegistry.version();
+        ConversionTable t = table;
+        if (t != null && t.version() == version) {
+            return t;
+        }
+        synchronized (UnitConverter.class) {
+            t = table;
+            if (t == null || t.version() != version) {
+                // Version read before the symbols: a change in between only causes another rebuild
+                t = new ConversionTable(version, UnitRegistry.symbols(), NonSiUnits.definitions());
+                table = t;
+            }
+            return t;
+        }
+    }
+
+    // a and b are the nodes of from and to, or -1 for expressions
+    private static double factor(ConversionTable t, String from, int a, String to, int b) {
+        if (a >= 0 && b >= 0) {
+            if (!t.sameDimension(a, b)) {
+                throw mismatch(from, to);
+            }
+            return t.factor(a, b);
+        }
+        ConversionTable.Unit source = (a >= 0) ? t.unit(a) : t.parse(from);
+        ConversionTable.Unit target = (b >= 0) ? t.unit(b) : t.parse(to);
+        if (source.bits() != target.bits()) {
+            throw mismatch(from, to);
+        }
+        return source.factor() / target.factor();
+    }
+
+    private static ParseError mismatch(String from, String to) {
+        return new ParseError(ParseError.Code.CONVERSION_DIMENSION_MISMATCH, -1, from + " to " + to);
+    }
+}
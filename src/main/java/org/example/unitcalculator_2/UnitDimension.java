@@ -1,74 +1,170 @@
 package org.example.unitcalculator_2;
 
-import java.util.Objects;
+/*****************************************************************
+ Exponents of the six base units packed into a single long.
 
+ Each exponent lives in its own 10-bit lane, biased by +128 so it
+ is always stored as a small non-negative number. The two top bits
+ of every lane are guard bits: multiply/divide are one add/subtract
+ on the whole long, and the guard bits tell us if a lane overflowed.
+
+ Lane order: length, mass, time, current, temperature, amount.
+ *******************************************************************/
 public final class UnitDimension {
-    private final int mass;        // kg
-    private final int length;      // m
-    private final int current;     // A
-    private final int temperature; // K
-    private final int amount;      // mol
-    private final int time;        // s
 
-    public static final UnitDimension DIMENSIONLESS = new UnitDimension(0, 0, 0, 0, 0, 0);
+    private static final int LANE_BITS = 10;
+    private static final int LANES = 6;
+    private static final long LANE_MASK = (1L << LANE_BITS) - 1;
+
+    private static final int BIAS = 128;
+    static final int MIN_EXPONENT = -BIAS;
+    static final int MAX_EXPONENT = BIAS - 1;
+
+    private static final long BIAS_ALL   = repeat(BIAS);       // +128 in every lane
+    private static final long GUARD8_ALL = repeat(BIAS << 1);  // bit 8 of every lane
+    private static final long GUARD9_ALL = repeat(BIAS << 2);  // bit 9 of every lane
+
+    private static final int LENGTH = 0;
+    private static final int MASS = 1;
+    private static final int TIME = 2;
+    private static final int CURRENT = 3;
+    private static final int TEMPERATURE = 4;
+    private static final int AMOUNT = 5;
+
+    // Direct-mapped intern table, racy but safe (all fields final)
+    private static final int INTERN_BITS = 10;
+    private static final UnitDimension[] INTERNED = new UnitDimension[1 << INTERN_BITS];
+
+    private final long bits;
+
+    // Built on first use; racy but harmless since Strings are immutable
+    private String baseString;
 
-    public UnitDimension(int length, int mass, int time, int current, int temperature, int amount) {
-        this.length = length;
-        this.mass = mass;
-        this.time = time;
-        this.current = current;
-        this.temperature = temperature;
-        this.amount = amount;
+    public static final UnitDimension DIMENSIONLESS = ofBits(BIAS_ALL);
+
+    private UnitDimension(long bits) {
+        this.bits = bits;
+    }
+
+    public static UnitDimension of(int length, int mass, int time, int current, int temperature, int amount) {
+        long packed = lane(length, LENGTH)
+                | lane(mass, MASS)
+                | lane(time, TIME)
+                | lane(current, CURRENT)
+                | lane(temperature, TEMPERATURE)
+                | lane(amount, AMOUNT);
+        return ofBits(packed);
+    }
+
+    // Canonical instance for packed bits; common dimensions come back as the same object
+    static UnitDimension ofBits(long bits) {
+        int slot = (int) (mix(bits) >>> (64 - INTERN_BITS));
+        UnitDimension cached = INTERNED[slot];
+        if (cached != null && cached.bits == bits) {
+            return cached;
+        }
+        UnitDimension dim = new UnitDimension(bits);
+        INTERNED[slot] = dim;
+        return dim;
+    }
+
+    long bits() {
+        return bits;
+    }
+
+    //**************************************************************************
+    // Packed arithmetic
+    //**************************************************************************
+    static long multiplyBits(long a, long b) {
+        return checked(a + b + BIAS_ALL);
+    }
+
+    static long divideBits(long a, long b) {
+        return checked(a + GUARD8_ALL - b + BIAS_ALL);
+    }
+
+    static long powBits(long a, int exponent) {
+        if (exponent == 1) {
+            return a;
+        }
+        long result = 0;
+        for (int i = 0; i < LANES; i++) {
+            long e = (long) exponent(a, i) * exponent;
+            if (e < MIN_EXPONENT || e > MAX_EXPONENT) {
+                throw new IllegalArgumentException("Dimension exponent out of range");
+            }
+            result |= (e + BIAS) << (i * LANE_BITS);
+        }
+        return result;
+    }
+
+    // Every lane of t holds (exponent + 384); valid lanes have bit 8 set and bit 9 clear
+    private static long checked(long t) {
+        if ((t & (GUARD8_ALL | GUARD9_ALL)) != GUARD8_ALL) {
+            throw new IllegalArgumentException("Dimension exponent out of range");
+        }
+        return t - GUARD8_ALL;
     }
 
     public UnitDimension multiply(UnitDimension other) {
-        return new UnitDimension(
-                this.length + other.length,
-                this.mass + other.mass,
-                this.time + other.time,
-                this.current + other.current,
-                this.temperature + other.temperature,
-                this.amount + other.amount
-        );
+        return ofBits(multiplyBits(this.bits, other.bits));
     }
 
     public UnitDimension divide(UnitDimension other) {
-        return new UnitDimension(
-                this.length - other.length,
-                this.mass - other.mass,
-                this.time - other.time,
-                this.current - other.current,
-                this.temperature - other.temperature,
-                this.amount - other.amount
-        );
+        return ofBits(divideBits(this.bits, other.bits));
     }
 
-
     public UnitDimension pow(int exponent) {
-        return new UnitDimension(
-                this.length * exponent,
-                this.mass * exponent,
-                this.time * exponent,
-                this.current * exponent,
-                this.temperature * exponent,
-                this.amount * exponent
-        );
+        return ofBits(powBits(this.bits, exponent));
     }
 
     public boolean isDimensionless() {
-        return this.equals(DIMENSIONLESS);
+        return bits == BIAS_ALL;
+    }
+
+    public int getLength() {
+        return exponent(bits, LENGTH);
+    }
+
+    public int getMass() {
+        return exponent(bits, MASS);
+    }
+
+    public int getTime() {
+        return exponent(bits, TIME);
+    }
+
+    public int getCurrent() {
+        return exponent(bits, CURRENT);
+    }
+
+    public int getTemperature() {
+        return exponent(bits, TEMPERATURE);
+    }
+
+    public int getAmount() {
+        return exponent(bits, AMOUNT);
     }
 
     public String toBaseString() {
+        String s = baseString;
+        if (s == null) {
+            s = buildBaseString();
+            baseString = s;
+        }
+        return s;
+    }
+
+    private String buildBaseString() {
         StringBuilder num = new StringBuilder();
         StringBuilder den = new StringBuilder();
 
-        appendUnit(num, den, "kg", mass);
-        appendUnit(num, den, "m", length);
-        appendUnit(num, den, "A", current);
-        appendUnit(num, den, "K", temperature);
-        appendUnit(num, den, "mol", amount);
-        appendUnit(num, den, "s", time);
+        appendUnit(num, den, "kg", getMass());
+        appendUnit(num, den, "m", getLength());
+        appendUnit(num, den, "A", getCurrent());
+        appendUnit(num, den, "K", getTemperature());
+        appendUnit(num, den, "mol", getAmount());
+        appendUnit(num, den, "s", getTime());
 
 
         if (num.length() == 0 && den.length() == 0) {
@@ -100,27 +196,44 @@ public final class UnitDimension {
         }
     }
 
+    //**************************************************************************
+    // Lane helpers
+    //**************************************************************************
+    private static long lane(int exponent, int index) {
+        if (exponent < MIN_EXPONENT || exponent > MAX_EXPONENT) {
+            throw new IllegalArgumentException("Dimension exponent out of range");
+        }
+        return ((long) (exponent + BIAS)) << (index * LANE_BITS);
+    }
+
+    private static int exponent(long bits, int index) {
+        return (int) ((bits >>> (index * LANE_BITS)) & LANE_MASK) - BIAS;
+    }
+
+    private static long repeat(int laneValue) {
+        long r = 0;
+        for (int i = 0; i < LANES; i++) {
+            r |= ((long) laneValue) << (i * LANE_BITS);
+        }
+        return r;
+    }
+
+    private static long mix(long bits) {
+        return bits * 0x9E3779B97F4A7C15L;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) {
             return true;
         }
 
-        if (!(o instanceof UnitDimension that)) {
-            return false;
-        }
-
-        return length == that.length &&
-                mass == that.mass &&
-                time == that.time &&
-                current == that.current &&
-                temperature == that.temperature &&
-                amount == that.amount;
+        return o instanceof UnitDimension that && bits == that.bits;
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(length, mass, time, current, temperature, amount);
+        return Long.hashCode(mix(bits));
     }
 
     @Override
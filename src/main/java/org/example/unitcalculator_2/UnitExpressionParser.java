@@ -1,12 +1,18 @@
 package org.example.unitcalculator_2;
 
+import java.util.function.Function;
+
 // Parse a formula with only unit and convert it to UnitDimension
 public final class UnitExpressionParser {
 
     private UnitExpressionParser() { }
 
+    // Dimension only: numbers are checked but never evaluated (see DimensionChecker)
     public static UnitDimension parse(String input) {
-        Quantity q = QuantityExpressionParser.parse(input);
-        return q.getDimension();
+        return DimensionChecker.check(input);
+    }
+
+    static UnitDimension parse(String input, Function<String, UnitDimension> resolver) {
+        return DimensionChecker.check(input, resolver);
     }
 }
@@ -1,116 +1,263 @@
 package org.example.unitcalculator_2;
 
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.Set;
+import java.util.function.Function;
 
 public final class UnitRegistry {
 
-    private static final Map<String, UnitDimension> SYMBOL_TO_DIM = new HashMap<>();
-    private static final Map<UnitDimension, String> DIM_TO_DERIVED_SYMBOL = new HashMap<>();
-    private static final Map<String, String> UNIT_NAMES = new HashMap<>();
+    /***************************************************************************
+    Immutable view of the registry. Readers grab the current snapshot once and
+    never lock; writers build a modified copy and swap the reference.
+    ***************************************************************************/
+    private static final class Snapshot {
+        private final Map<String, UnitDimension> symbolToDim;
+        private final Map<UnitDimension, String> dimToDerivedSymbol;
+        private final Map<String, String> unitNames;
+
+        // Every symbol and prefix + symbol, for single-probe lookups
+        private final UnitSymbolTable table;
+
+        // Display names for dimensions without a derived symbol
+        private final CompoundUnitIndex compounds;
+
+        // Same symbols as symbolToDim, for splitting juxtaposed symbols
+        private final UnitSymbolTrie concatTrie;
+
+        // Bumped on every custom unit change so compiled expressions can detect stale symbols
+        private final int version;
+
+        // Maps the builder did not change are shared with the snapshot it started from
+        private Snapshot(Builder b, int version) {
+            Snapshot from = b.from;
+            this.symbolToDim = readOnly(b.symbolToDim, from == null ? null : from.symbolToDim);
+            this.dimToDerivedSymbol = readOnly(b.dimToDerivedSymbol, from == null ? null : from.dimToDerivedSymbol);
+            this.unitNames = readOnly(b.unitNames, from == null ? null : from.unitNames);
+            this.table = (b.baseTable == null)
+                    ? UnitSymbolTable.of(this.symbolToDim)
+                    : b.baseTable.plus(b.added);
+            this.compounds = (b.compounds == null)
+                    ? new CompoundUnitIndex(this.symbolToDim, b.dimToDerivedSymbol)
+                    : b.compounds;
+            this.concatTrie = (b.baseTrie == null)
+                    ? UnitSymbolTrie.of(this.symbolToDim)
+                    : b.baseTrie.plus(b.added);
+            this.version = version;
+        }
+
+        private static <K, V> Map<K, V> readOnly(Map<K, V> map, Map<K, V> shared) {
+            return map == shared ? shared : Collections.unmodifiableMap(map);
+        }
+
+        private UnitDimension resolve(String symbol) {
+            UnitDimension dim = find(symbol);
+            if (dim == null) {
+                // A lone symbol, not part of a formula: no position to report
+                throw new ParseError(ParseError.Code.UNKNOWN_SYMBOL, -1, symbol);
+            }
+            return dim;
+        }
+
+        // null when the symbol is unknown
+        private UnitDimension find(String symbol) {
+            return find(symbol, 0, symbol.length());
+        }
+
+        private UnitDimension find(CharSequence input, int start, int end) {
+            return find(input, start, end, CalculatorMetrics.ENABLED);
+        }
+
+        // record: count the branch taken in CalculatorMetrics (off for probes that are not real lookups)
+        private UnitDimension find(CharSequence input, int start, int end, boolean record) {
+            // Symbol or prefix + symbol
+            int slot = table.find(input, start, end);
+            if (slot >= 0) {
+                if (record) {
+                    if (table.isPrefixed(slot)) {
+                        CalculatorMetrics.recordResolvePrefix();
+                    } else {
+                        CalculatorMetrics.recordResolveDirect();
+                    }
+                }
+                return table.dimension(slot);
+            }
+
+            // Smooth multiplication
+            long bits = concatTrie.resolveConcatenatedBits(input, start, end);
+            if (bits == UnitSymbolTrie.NO_MATCH) {
+                if (record) CalculatorMetrics.recordResolveMiss();
+                return null;
+            }
+            if (record) CalculatorMetrics.recordResolveConcatenated();
+            return UnitDimension.ofBits(bits);
+        }
+    }
+
+    // Working copy used while building the next snapshot
+    private static final class Builder {
+        // Snapshot this builder started from, or null for the built-in units
+        private final Snapshot from;
+
+        // The maps of from until first written, then private copies
+        private Map<String, UnitDimension> symbolToDim;
+        private Map<UnitDimension, String> dimToDerivedSymbol;
+        private Map<String, String> unitNames;
+
+        // Table and trie to extend with the added symbols; null means build fresh ones
+        private UnitSymbolTable baseTable;
+        private UnitSymbolTrie baseTrie;
+        private final Map<String, UnitDimension> added = new HashMap<>();
+
+        // Reused while the derived units stay the same; null means build a fresh one
+        private CompoundUnitIndex compounds;
+
+        private Builder() {
+            from = null;
+            symbolToDim = new HashMap<>();
+            dimToDerivedSymbol = new LinkedHashMap<>();
+            unitNames = new HashMap<>();
+        }
 
-    // Prefix hidden for now
-    private static final Set<String> PREFIXES = Set.of("k", "m", "μ", "u", "n");
+        private Builder(Snapshot from) {
+            this.from = from;
+            symbolToDim = from.symbolToDim;
+            dimToDerivedSymbol = from.dimToDerivedSymbol;
+            unitNames = from.unitNames;
+            baseTable = from.table;
+            baseTrie = from.concatTrie;
+            compounds = from.compounds;
+        }
+
+        private void register(String symbol, UnitDimension dim) {
+            if (from != null && symbolToDim == from.symbolToDim) {
+                symbolToDim = new HashMap<>(symbolToDim);
+            }
+            symbolToDim.put(symbol, dim);
+            added.put(symbol, dim);
+        }
+
+        private void remove(String symbol) {
+            if (from != null && symbolToDim == from.symbolToDim) {
+                symbolToDim = new HashMap<>(symbolToDim);
+            }
+            if (from != null && unitNames == from.unitNames) {
+                unitNames = new HashMap<>(unitNames);
+            }
+            symbolToDim.remove(symbol);
+            unitNames.remove(symbol);
+            // prefixed entries and trie nodes of the symbol must go too, so start over
+            baseTable = null;
+            baseTrie = null;
+        }
+
+        // Only used for the built-in units, before any snapshot exists
+        private void registerDerived(String symbol, UnitDimension dim, String niceName) {
+            register(symbol, dim);
+            dimToDerivedSymbol.put(dim, symbol);
+            compounds = null;
+
+            if (niceName != null) {
+                unitNames.put(symbol, niceName);
+            }
+        }
+
+        private Snapshot build(int version) {
+            return new Snapshot(this, version);
+        }
+    }
+
+    private static volatile Snapshot current;
+    private static final Object WRITE_LOCK = new Object();
 
     //**************************************************************************
     // Static initializer
     //**************************************************************************
     static {
+        Builder builtin = new Builder();
 
         // Base units
-        register("kg", new UnitDimension(0, 1, 0, 0, 0, 0));
-        register("m",  new UnitDimension(1, 0, 0, 0, 0, 0));
-        register("s",  new UnitDimension(0, 0, 1, 0, 0, 0));
-        register("A",  new UnitDimension(0, 0, 0, 1, 0, 0));
-        register("K",  new UnitDimension(0, 0, 0, 0, 1, 0));
-        register("mol",new UnitDimension(0, 0, 0, 0, 0, 1));
+        builtin.register("kg", UnitDimension.of(0, 1, 0, 0, 0, 0));
+        builtin.register("m",  UnitDimension.of(1, 0, 0, 0, 0, 0));
+        builtin.register("s",  UnitDimension.of(0, 0, 1, 0, 0, 0));
+        builtin.register("A",  UnitDimension.of(0, 0, 0, 1, 0, 0));
+        builtin.register("K",  UnitDimension.of(0, 0, 0, 0, 1, 0));
+        builtin.register("mol",UnitDimension.of(0, 0, 0, 0, 0, 1));
 
-        UNIT_NAMES.put("kg", "Mass");
-        UNIT_NAMES.put("m",  "Length");
-        UNIT_NAMES.put("s",  "Time");
-        UNIT_NAMES.put("A",  "Current");
-        UNIT_NAMES.put("K",  "Temperature");
-        UNIT_NAMES.put("mol","Amount of substance");
+        builtin.unitNames.put("kg", "Mass");
+        builtin.unitNames.put("m",  "Length");
+        builtin.unitNames.put("s",  "Time");
+        builtin.unitNames.put("A",  "Current");
+        builtin.unitNames.put("K",  "Temperature");
+        builtin.unitNames.put("mol","Amount of substance");
 
 
         /**********************************************
         * Derived Units
         **********************************************/
-        registerDerived("N",
-                new UnitDimension(1, 1, -2, 0, 0, 0),
+        builtin.registerDerived("N",
+                UnitDimension.of(1, 1, -2, 0, 0, 0),
                 "Force");
 
-        registerDerived("J",
-                new UnitDimension(2, 1, -2, 0, 0, 0),
+        builtin.registerDerived("J",
+                UnitDimension.of(2, 1, -2, 0, 0, 0),
                 "Energy");
 
-        registerDerived("W",
-                new UnitDimension(2, 1, -3, 0, 0, 0),
+        builtin.registerDerived("W",
+                UnitDimension.of(2, 1, -3, 0, 0, 0),
                 "Power");
 
-        registerDerived("Pa",
-                new UnitDimension(-1, 1, -2, 0, 0, 0),
+        builtin.registerDerived("Pa",
+                UnitDimension.of(-1, 1, -2, 0, 0, 0),
                 "Pressure");
 
-        registerDerived("Hz",
-                new UnitDimension(0, 0, -1, 0, 0, 0),
+        builtin.registerDerived("Hz",
+                UnitDimension.of(0, 0, -1, 0, 0, 0),
                 "Frequency");
 
-        registerDerived("C",
-                new UnitDimension(0, 0, 1, 1, 0, 0),
+        builtin.registerDerived("C",
+                UnitDimension.of(0, 0, 1, 1, 0, 0),
                 "Charge");
 
-        registerDerived("V",
-                new UnitDimension(2, 1, -3, -1, 0, 0),
+        builtin.registerDerived("V",
+                UnitDimension.of(2, 1, -3, -1, 0, 0),
                 "Voltage");
 
-        registerDerived("E",
-                new UnitDimension(1, 1, -3, -1, 0, 0),
+        builtin.registerDerived("E",
+                UnitDimension.of(1, 1, -3, -1, 0, 0),
                 "Electric field");
 
-        UnitDimension ohmDim = new UnitDimension(2, 1, -3, -2, 0, 0);
-        registerDerived("Ω",   ohmDim, "Resistance");
-        registerDerived("ohm", ohmDim, "Resistance");
+        UnitDimension ohmDim = UnitDimension.of(2, 1, -3, -2, 0, 0);
+        builtin.registerDerived("Ω",   ohmDim, "Resistance");
+        builtin.registerDerived("ohm", ohmDim, "Resistance");
 
-        registerDerived("F",
-                new UnitDimension(-2, -1, 4, 2, 0, 0),
+        builtin.registerDerived("F",
+                UnitDimension.of(-2, -1, 4, 2, 0, 0),
                 "Capacitance");
 
-        registerDerived("T",
-                new UnitDimension(0, 1, -2, -1, 0, 0),
+        builtin.registerDerived("T",
+                UnitDimension.of(0, 1, -2, -1, 0, 0),
                 "Magnetic field");
 
-        registerDerived("H",
-                new UnitDimension(2, 1, -2, -2, 0, 0),
+        builtin.registerDerived("H",
+                UnitDimension.of(2, 1, -2, -2, 0, 0),
                 "Inductance");
 
-        registerDerived("Φ",
-                new UnitDimension(2, 1, -2, -1, 0, 0),
+        builtin.registerDerived("Φ",
+                UnitDimension.of(2, 1, -2, -1, 0, 0),
                 "Magnetic flux");
-    }
-
-    /******************************************************************************************
-    Registration helpers
-    ******************************************************************************************/
-    private static void register(String symbol, UnitDimension dim) {
-        SYMBOL_TO_DIM.put(symbol, dim);
-    }
 
-    private static void registerDerived(String symbol, UnitDimension dim, String niceName) {
-        SYMBOL_TO_DIM.put(symbol, dim);
-        DIM_TO_DERIVED_SYMBOL.put(dim, symbol);
-
-        if (niceName != null) {
-            UNIT_NAMES.put(symbol, niceName);
-        }
+        current = builtin.build(0);
     }
 
     /**********************************************************************************
     Lookup API
     **********************************************************************************/
     public static UnitDimension getDimension(String symbol) {
-        UnitDimension dim = SYMBOL_TO_DIM.get(symbol);
+        UnitDimension dim = current.symbolToDim.get(symbol);
         if (dim == null) {
             throw new IllegalArgumentException("Unknown unit symbol: " + symbol);
         }
@@ -121,73 +268,129 @@ public final class UnitRegistry {
     Interpret symbols in QuantityExpressionParser
     ***********************************************************************************************/
     public static UnitDimension resolveSymbol(String symbol) {
-        UnitDimension dim = SYMBOL_TO_DIM.get(symbol);
-        if (dim != null) return dim;
-
-        if (symbol.length() > 1) {
-            String prefix = symbol.substring(0, 1);
-            String baseSymbol = symbol.substring(1);
-
-            if (PREFIXES.contains(prefix)) {
-                UnitDimension base = SYMBOL_TO_DIM.get(baseSymbol);
-                if (base != null) return base;
-            }
-        }
-
-        UnitDimension concat = tryConcatenated(symbol);
-        if (concat != null) return concat;
+        return current.resolve(symbol);
+    }
 
-        throw new IllegalArgumentException("Unknown unit symbol: " + symbol);
+    // Same as resolveSymbol, but returns null instead of throwing for unknown symbols
+    public static UnitDimension findSymbol(String symbol) {
+        return current.find(symbol);
     }
 
+    // Whether findSymbol would resolve symbol, without counting it in the resolution metrics
+    static boolean isResolvable(String symbol) {
+        return current.find(symbol, 0, symbol.length(), false) != null;
+    }
 
-    // Smooth multiplicatoin
-    private static UnitDimension tryConcatenated(String symbol) {
-        int len = symbol.length();
-        UnitDimension result = null;
-        int pos = 0;
+    // Same rules as findSymbol(String) for input[start, end), without allocating
+    static UnitDimension findSymbol(CharSequence input, int start, int end) {
+        return current.find(input, start, end);
+    }
 
-        while (pos < len) {
-            String bestMatch = null;
-            UnitDimension bestDim = null;
-            int bestLen = 0;
+    /***********************************************************************************************
+    Resolver over the current registry plus units that are not published yet
+    (used while loading custom units that refer to each other); like
+    findSymbol it returns null for unknown symbols
+    ***********************************************************************************************/
+    static Function<String, UnitDimension> resolverWith(Map<String, UnitDimension> extra) {
+        Snapshot snap = current;
+        if (extra.isEmpty()) {
+            return snap::find;
+        }
+        Builder staged = new Builder(snap);
+        extra.forEach(staged::register);
+        return staged.build(snap.version)::find;
+    }
 
-            for (String key : SYMBOL_TO_DIM.keySet()) {
-                if (symbol.startsWith(key, pos) && key.length() > bestLen) {
-                    bestMatch = key;
-                    bestDim = SYMBOL_TO_DIM.get(key);
-                    bestLen = key.length();
-                }
-            }
+    /***********************************************************************************************
+    Splits a juxtaposed symbol run the way findSymbol would, over the registered symbols plus
+    extra (units not registered yet, e.g. while loading); the function returns null when the
+    run does not split
+    ***********************************************************************************************/
+    static Function<String, List<String>> splitterWith(Collection<String> extra) {
+        Map<String, UnitDimension> spellings = new HashMap<>();
+        for (String symbol : extra) {
+            // Only the spelling matters for where a run splits
+            spellings.put(symbol, UnitDimension.DIMENSIONLESS);
+        }
+        return current.concatTrie.plus(spellings)::split;
+    }
 
-            if (bestMatch == null) return null;
+    public static String getDerivedSymbol(UnitDimension dim) {
+        return current.dimToDerivedSymbol.get(dim);
+    }
 
-            result = (result == null) ? bestDim : result.multiply(bestDim);
-            pos += bestLen;
+    /***********************************************************************************************
+    Shortest way to write dim: its derived symbol, else a compound of derived
+    units such as "J*s" when that is simpler than the base form, else the base form
+    ***********************************************************************************************/
+    public static String getDisplayUnit(UnitDimension dim) {
+        Snapshot snap = current;
+        String derived = snap.dimToDerivedSymbol.get(dim);
+        if (derived != null) {
+            return derived;
         }
-
-        return result;
+        String compound = snap.compounds.lookup(dim);
+        return compound != null ? compound : dim.toBaseString();
     }
 
-    public static String getDerivedSymbol(UnitDimension dim) {
-        return DIM_TO_DERIVED_SYMBOL.get(dim);
+    // Compound spelling of dim, or null if it has a derived symbol or nothing beats the base form
+    public static String getCompoundSymbol(UnitDimension dim) {
+        Snapshot snap = current;
+        return snap.dimToDerivedSymbol.containsKey(dim) ? null : snap.compounds.lookup(dim);
     }
 
     public static String getUnitName(String symbol) {
-        return UNIT_NAMES.get(symbol);
+        return current.unitNames.get(symbol);
     }
 
     // Custom unit API
     public static boolean hasSymbol(String symbol) {
-        return SYMBOL_TO_DIM.containsKey(symbol);
+        return current.symbolToDim.containsKey(symbol);
     }
 
     public static void registerCustom(String symbol, UnitDimension dim) {
-        SYMBOL_TO_DIM.put(symbol, dim);
+        synchronized (WRITE_LOCK) {
+            Snapshot snap = current;
+            Builder next = new Builder(snap);
+            next.register(symbol, dim);
+            current = next.build(snap.version + 1);
+        }
     }
 
     public static void unregisterCustom(String symbol) {
-        SYMBOL_TO_DIM.remove(symbol);
-        UNIT_NAMES.remove(symbol);
+        synchronized (WRITE_LOCK) {
+            Snapshot snap = current;
+            Builder next = new Builder(snap);
+            next.remove(symbol);
+            current = next.build(snap.version + 1);
+        }
+    }
+
+    // Removals first, then additions, in one swap; readers never see half a reload
+    static void applyCustomChanges(Collection<String> removed, Map<String, UnitDimension> added) {
+        if (removed.isEmpty() && added.isEmpty()) {
+            return;
+        }
+        synchronized (WRITE_LOCK) {
+            Snapshot snap = current;
+            Builder next = new Builder(snap);
+            removed.forEach(next::remove);
+            added.forEach(next::register);
+            current = next.build(snap.version + 1);
+        }
+    }
+
+    static int version() {
+        return current.version;
+    }
+
+    // Every registered symbol (built-in and custom, without prefixed forms) with its dimension
+    static Map<String, UnitDimension> symbols() {
+        return current.symbolToDim;
+    }
+
+    // Number of registered symbols (built-in and custom, without prefixed forms)
+    static int size() {
+        return current.symbolToDim.size();
     }
 }
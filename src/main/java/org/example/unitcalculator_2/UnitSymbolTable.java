@@ -0,0 +1,183 @@
+package org.example.unitcalculator_2;
+
+import java.util.Map;
+
+/*****************************************************************
+ Open-addressing table of every symbol and every prefix + symbol
+
+ "m", "km", "mm", "μm", ... are all precomputed keys, each with its
+ dimension, so a symbol is found with one hash over the input range
+ and (almost always) one probe.
+ Registered symbols win over a prefixed reading of the same text.
+
+ Immutable once built; adding units copies the arrays and inserts
+ only the new keys instead of rebuilding from scratch.
+ *******************************************************************/
+final class UnitSymbolTable {
+
+    // The parser ignores the scale; ConversionTable applies FACTORS
+    static final char[] PREFIXES = {'k', 'm', 'μ', 'u', 'n'};
+    static final double[] FACTORS = {1e3, 1e-3, 1e-6, 1e-6, 1e-9};
+
+    private static final int MIN_CAPACITY = 64;
+
+    private String[] keys;
+    private int[] hashes;
+    private UnitDimension[] dims;
+    private boolean[] prefixed;
+    private int size;
+
+    private UnitSymbolTable(int capacity) {
+        keys = new String[capacity];
+        hashes = new int[capacity];
+        dims = new UnitDimension[capacity];
+        prefixed = new boolean[capacity];
+    }
+
+    private UnitSymbolTable(UnitSymbolTable from) {
+        keys = from.keys.clone();
+        hashes = from.hashes.clone();
+        dims = from.dims.clone();
+        prefixed = from.prefixed.clone();
+        size = from.size;
+    }
+
+    static UnitSymbolTable of(Map<String, UnitDimension> symbols) {
+        UnitSymbolTable t = new UnitSymbolTable(capacityFor(symbols.size()));
+        symbols.forEach(t::addSymbol);
+        return t;
+    }
+
+    // Copy of this table with more symbols; this table is left untouched
+    UnitSymbolTable plus(Map<String, UnitDimension> symbols) {
+        UnitSymbolTable t = new UnitSymbolTable(this);
+        symbols.forEach(t::addSymbol);
+        return t;
+    }
+
+    //**************************************************************************
+    // Lookup
+    //**************************************************************************
+
+    // Slot of input[start, end), or -1 if it is neither a symbol nor prefix + symbol
+    int find(CharSequence input, int start, int end) {
+        int h = hash(input, start, end);
+        int mask = keys.length - 1;
+        for (int i = spread(h) & mask; ; i = (i + 1) & mask) {
+            String key = keys[i];
+            if (key == null) {
+                return -1;
+            }
+            if (hashes[i] == h && matches(key, input, start, end)) {
+                return i;
+            }
+        }
+    }
+
+    UnitDimension dimension(int slot) {
+        return dims[slot];
+    }
+
+    boolean isPrefixed(int slot) {
+        return prefixed[slot];
+    }
+
+    //**************************************************************************
+    // Building
+    //**************************************************************************
+    private void addSymbol(String symbol, UnitDimension dim) {
+        put(symbol, dim, false);
+        for (int p = 0; p < PREFIXES.length; p++) {
+            put(PREFIXES[p] + symbol, dim, true);
+        }
+    }
+
+    private void put(String key, UnitDimension dim, boolean isPrefixed) {
+        if ((size + 1) * 2 > keys.length) {
+            grow();
+        }
+        int h = hash(key, 0, key.length());
+        int mask = keys.length - 1;
+        int i = spread(h) & mask;
+        while (keys[i] != null) {
+            if (hashes[i] == h && keys[i].equals(key)) {
+                // a registered symbol is never shadowed by a prefixed reading
+                if (isPrefixed && !prefixed[i]) {
+                    return;
+                }
+                dims[i] = dim;
+                prefixed[i] = isPrefixed;
+                return;
+            }
+            i = (i + 1) & mask;
+        }
+        keys[i] = key;
+        hashes[i] = h;
+        dims[i] = dim;
+        prefixed[i] = isPrefixed;
+        size++;
+    }
+
+    private void grow() {
+        String[] oldKeys = keys;
+        int[] oldHashes = hashes;
+        UnitDimension[] oldDims = dims;
+        boolean[] oldPrefixed = prefixed;
+
+        int capacity = oldKeys.length * 2;
+        keys = new String[capacity];
+        hashes = new int[capacity];
+        dims = new UnitDimension[capacity];
+        prefixed = new boolean[capacity];
+
+        int mask = capacity - 1;
+        for (int j = 0; j < oldKeys.length; j++) {
+            if (oldKeys[j] == null) {
+                continue;
+            }
+            int i = spread(oldHashes[j]) & mask;
+            while (keys[i] != null) {
+                i = (i + 1) & mask;
+            }
+            keys[i] = oldKeys[j];
+            hashes[i] = oldHashes[j];
+            dims[i] = oldDims[j];
+            prefixed[i] = oldPrefixed[j];
+        }
+    }
+
+    // Room for every symbol with all its prefixes at a load factor of at most 1/2
+    private static int capacityFor(int symbols) {
+        int needed = symbols * (PREFIXES.length + 1) * 2;
+        int capacity = MIN_CAPACITY;
+        while (capacity < needed) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    // Same value as String.hashCode for the range
+    private static int hash(CharSequence s, int start, int end) {
+        int h = 0;
+        for (int i = start; i < end; i++) {
+            h = 31 * h + s.charAt(i);
+        }
+        return h;
+    }
+
+    private static int spread(int h) {
+        return h ^ (h >>> 16);
+    }
+
+    private static boolean matches(String key, CharSequence s, int start, int end) {
+        if (key.length() != end - start) {
+            return false;
+        }
+        for (int i = 0; i < key.length(); i++) {
+            if (key.charAt(i) != s.charAt(start + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,207 @@
+package org.example.unitcalculator_2;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/*****************************************************************
+ Character trie over every registered unit symbol
+ Used by UnitRegistry to split juxtaposed symbols like "kgms".
+ Immutable once built; plus() copies only the nodes on the paths of
+ the new symbols and shares the rest with the trie it started from.
+ *******************************************************************/
+final class UnitSymbolTrie {
+
+    // Never produced by UnitDimension (top bits of a packed dimension are always 0)
+    static final long NO_MATCH = -1L;
+    private static final long FAILED = Long.MIN_VALUE;
+    private static final int MASK_POSITIONS = 63;
+
+    private static final class Node {
+        private char[] keys = new char[0];
+        private Node[] children = new Node[0];
+        private UnitDimension dim;
+
+        // The plus() call that created this node; only that call may change it
+        private final Object owner;
+
+        Node(Object owner) {
+            this.owner = owner;
+        }
+
+        Node(Node from, Object owner) {
+            this.keys = from.keys.clone();
+            this.children = from.children.clone();
+            this.dim = from.dim;
+            this.owner = owner;
+        }
+
+        Node child(char c) {
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] == c) {
+                    return children[i];
+                }
+            }
+            return null;
+        }
+
+        // Child for c that owner may change: a shared child is copied, a missing one created
+        Node ownedChild(char c, Object owner) {
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] == c) {
+                    if (children[i].owner != owner) {
+                        children[i] = new Node(children[i], owner);
+                    }
+                    return children[i];
+                }
+            }
+            Node created = new Node(owner);
+            keys = Arrays.copyOf(keys, keys.length + 1);
+            children = Arrays.copyOf(children, children.length + 1);
+            keys[keys.length - 1] = c;
+            children[children.length - 1] = created;
+            return created;
+        }
+    }
+
+    private static final UnitSymbolTrie EMPTY = new UnitSymbolTrie(new Node(null));
+
+    private final Node root;
+
+    private UnitSymbolTrie(Node root) {
+        this.root = root;
+    }
+
+    static UnitSymbolTrie of(Map<String, UnitDimension> symbols) {
+        return EMPTY.plus(symbols);
+    }
+
+    // Copy of this trie with more symbols; this trie is left untouched
+    UnitSymbolTrie plus(Map<String, UnitDimension> symbols) {
+        Object owner = new Object();
+        Node newRoot = new Node(root, owner);
+        symbols.forEach((symbol, dim) -> {
+            Node node = newRoot;
+            for (int i = 0; i < symbol.length(); i++) {
+                node = node.ownedChild(symbol.charAt(i), owner);
+            }
+            node.dim = dim;
+        });
+        return new UnitSymbolTrie(newRoot);
+    }
+
+    // Exact lookup of symbol[start, end) without creating a substring
+    UnitDimension get(CharSequence symbol, int start, int end) {
+        Node node = root;
+        for (int i = start; i < end && node != null; i++) {
+            node = node.child(symbol.charAt(i));
+        }
+        return node == null ? null : node.dim;
+    }
+
+    /***********************************************************************
+    Split the whole symbol into registered symbols and multiply them.
+    Longest match first; shorter matches are tried when the rest of the
+    symbol cannot be split. Positions already known to fail are skipped,
+    so every start position is explored at most once.
+    ***********************************************************************/
+    UnitDimension resolveConcatenated(String symbol) {
+        long bits = resolveConcatenatedBits(symbol, 0, symbol.length());
+        return bits == NO_MATCH ? null : UnitDimension.ofBits(bits);
+    }
+
+    // Symbols the whole of symbol splits into, chosen as resolveConcatenated chooses them; null if none
+    List<String> split(String symbol) {
+        List<String> parts = new ArrayList<>();
+        boolean[] dead = new boolean[symbol.length()];
+        return !symbol.isEmpty() && splitFrom(symbol, 0, dead, parts) ? parts : null;
+    }
+
+    private boolean splitFrom(String symbol, int pos, boolean[] dead, List<String> parts) {
+        if (pos == symbol.length()) {
+            return true;
+        }
+        if (dead[pos]) {
+            return false;
+        }
+        // Ends of the symbols starting at pos, shortest first; tried longest first
+        List<Integer> ends = new ArrayList<>();
+        Node node = root;
+        for (int at = pos; at < symbol.length() && (node = node.child(symbol.charAt(at))) != null; at++) {
+            if (node.dim != null) {
+                ends.add(at + 1);
+            }
+        }
+        for (int i = ends.size() - 1; i >= 0; i--) {
+            int end = ends.get(i);
+            parts.add(symbol.substring(pos, end));
+            if (splitFrom(symbol, end, dead, parts)) {
+                return true;
+            }
+            parts.remove(parts.size() - 1);
+        }
+        dead[pos] = true;
+        return false;
+    }
+
+    // Packed dimension of symbol[start, end), or NO_MATCH
+    long resolveConcatenatedBits(CharSequence symbol, int start, int end) {
+        if (start >= end) {
+            return NO_MATCH;
+        }
+        // Failed positions live in a bit mask for normal symbols, an array only for very long ones
+        boolean[] deadArray = (end - start > MASK_POSITIONS) ? new boolean[end - start] : null;
+        long bits = match(symbol, start, start, end, 0L, deadArray);
+        return bits < 0 ? NO_MATCH : bits;
+    }
+
+    // Packed bits (>= 0) on success; on failure FAILED plus the updated dead-position mask
+    private long match(CharSequence symbol, int origin, int pos, int end, long dead, boolean[] deadArray) {
+        if (pos == end) {
+            return UnitDimension.DIMENSIONLESS.bits();
+        }
+        int rel = pos - origin;
+        if (deadArray != null ? deadArray[rel] : (dead & (1L << rel)) != 0) {
+            return FAILED | dead;
+        }
+
+        long bits = extend(root, symbol, origin, pos, pos, end, dead, deadArray);
+        if (bits >= 0) {
+            return bits;
+        }
+        dead = bits & ~FAILED;
+
+        if (deadArray != null) {
+            deadArray[rel] = true;
+        } else {
+            dead |= 1L << rel;
+        }
+        return FAILED | dead;
+    }
+
+    /***********************************************************************
+    node is where the trie stands after symbol[pos, at). Descend while the
+    input follows the trie, then try the symbols met on the way back up:
+    longest first, and the trie is walked only once per start position.
+    ***********************************************************************/
+    private long extend(Node node, CharSequence symbol, int origin, int pos, int at, int end,
+                        long dead, boolean[] deadArray) {
+        Node next = (at < end) ? node.child(symbol.charAt(at)) : null;
+        if (next != null) {
+            long longer = extend(next, symbol, origin, pos, at + 1, end, dead, deadArray);
+            if (longer >= 0) {
+                return longer;
+            }
+            dead = longer & ~FAILED;
+        }
+        if (node.dim != null && at > pos) {
+            long rest = match(symbol, origin, at, end, dead, deadArray);
+            if (rest >= 0) {
+                return UnitDimension.multiplyBits(node.dim.bits(), rest);
+            }
+            dead = rest & ~FAILED;
+        }
+        return FAILED | dead;
+    }
+}
@@ -0,0 +1,148 @@
+package org.example.unitcalculator_2;
+
+import java.util.Locale;
+
+/*****************************************************************
+ Number formatting shared by the UI and headless callers
+ 3 decimal places, scientific notation outside [1e-3, 1e6)
+
+ Digits are produced with long arithmetic straight into the caller's
+ StringBuilder, no Formatter involved. Rounding is half-up like
+ String.format; values that sit too close to a rounding tie to be
+ sure of the direction (and extreme magnitudes) still go through
+ String.format, so the output is identical either way.
+ *******************************************************************/
+public final class ValueFormatter {
+
+    // |fraction - 0.5| below this is treated as a possible tie
+    private static final double TIE_MARGIN = 1e-5;
+
+    private static final int MIN_FAST_EXPONENT = -300;
+    private static final int MAX_FAST_EXPONENT = 300;
+    private static final double[] POW10 = new double[MAX_FAST_EXPONENT + 8];
+
+    static {
+        for (int i = 0; i < POW10.length; i++) {
+            POW10[i] = Double.parseDouble("1e" + i);
+        }
+    }
+
+    private ValueFormatter() { }
+
+    public static String format(double v) {
+        return appendTo(new StringBuilder(16), v).toString();
+    }
+
+    // Appends the same text format(v) returns; allocates nothing on the fast path
+    public static StringBuilder appendTo(StringBuilder out, double v) {
+        if (Double.isNaN(v) || Double.isInfinite(v)) {
+            return out.append(v);
+        }
+
+        double abs = Math.abs(v);
+
+        // range for 3 decimal places
+        if (abs == 0.0 || (abs >= 1e-3 && abs < 1e6)) {
+            if (!appendFixed(out, v, abs)) {
+                String s = String.format(Locale.US, "%.3f", v);
+                out.append(s.replaceAll("\\.?0+$", ""));
+            }
+            return out;
+        }
+
+        // scientific range
+        if (!appendScientific(out, v, abs)) {
+            out.append(String.format(Locale.US, "%.3e", v));
+        }
+        return out;
+    }
+
+    // "%.3f" without trailing zeros; false if the rounding is too close to call
+    private static boolean appendFixed(StringBuilder out, double v, double abs) {
+        double scaled = abs * 1000;
+        long units = roundHalfUp(scaled);
+        if (units < 0) {
+            return false;
+        }
+
+        if (v < 0 || (v == 0 && 1 / v < 0)) {
+            out.append('-');
+        }
+        out.append(units / 1000);
+
+        int frac = (int) (units % 1000);
+        if (frac != 0) {
+            out.append('.');
+            out.append((char) ('0' + frac / 100));
+            frac %= 100;
+            if (frac != 0) {
+                out.append((char) ('0' + frac / 10));
+                frac %= 10;
+                if (frac != 0) {
+                    out.append((char) ('0' + frac));
+                }
+            }
+        }
+        return true;
+    }
+
+    // "%.3e": d.ddde+XX; false if the rounding is too close to call
+    private static boolean appendScientific(StringBuilder out, double v, double abs) {
+        int exp = (int) Math.floor(Math.log10(abs));
+        if (exp < MIN_FAST_EXPONENT || exp > MAX_FAST_EXPONENT) {
+            return false;
+        }
+
+        // four significant digits in [1000, 10000)
+        double scaled = scale(abs, exp - 3);
+        if (scaled >= 10000) {
+            exp++;
+            scaled = scale(abs, exp - 3);
+        } else if (scaled < 1000) {
+            exp--;
+            scaled = scale(abs, exp - 3);
+        }
+
+        long digits = roundHalfUp(scaled);
+        if (digits < 0) {
+            return false;
+        }
+        if (digits == 10000) {
+            digits = 1000;
+            exp++;
+        }
+
+        if (v < 0) {
+            out.append('-');
+        }
+        int d = (int) digits;
+        out.append((char) ('0' + d / 1000));
+        out.append('.');
+        out.append((char) ('0' + d / 100 % 10));
+        out.append((char) ('0' + d / 10 % 10));
+        out.append((char) ('0' + d % 10));
+
+        out.append('e');
+        out.append(exp < 0 ? '-' : '+');
+        int e = Math.abs(exp);
+        if (e < 10) {
+            out.append('0');
+        }
+        out.append(e);
+        return true;
+    }
+
+    private static double scale(double abs, int power) {
+        return power >= 0 ? abs / POW10[power] : abs * POW10[-power];
+    }
+
+    // Nearest long, halves away from zero; -1 when x is within TIE_MARGIN of a half
+    private static long roundHalfUp(double x) {
+        double floor = Math.floor(x);
+        double frac = x - floor;
+        if (Math.abs(frac - 0.5) < TIE_MARGIN) {
+            return -1;
+        }
+        return (long) floor + (frac > 0.5 ? 1 : 0);
+    }
+}